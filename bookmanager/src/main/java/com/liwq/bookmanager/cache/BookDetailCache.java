@@ -0,0 +1,92 @@
+package com.liwq.bookmanager.cache;
+
+import com.liwq.bookmanager.dto.BookDetailDTO;
+import com.liwq.bookmanager.dto.CacheStatisticsDTO;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Function;
+
+/**
+ * 图书详情缓存（每个实例一份）
+ * 只用于书名、作者、分类等书目信息：可借数量、上下架状态、版本号和更新时间由调用方每次按主键读取后覆盖，
+ * 不会因其他实例的借还而过期。本实例修改书目信息时立即失效，处于事务中时提交后再失效一次；
+ * 加载前取版本号、写回时校验，读线程不会把事务提交前读到的旧数据写回缓存。
+ * 其他实例修改书目信息后，本实例最多在存活时间（book-cache.ttl）内返回旧的书目信息。
+ */
+@Component
+public class BookDetailCache {
+
+    private final LruCache<Long, BookDetailDTO> cache;
+
+    private final boolean enabled;
+
+    public BookDetailCache(@Value("${book-cache.enabled:true}") boolean enabled,
+                           @Value("${book-cache.max-size:5000}") int maxSize,
+                           @Value("${book-cache.ttl:600000}") long ttlMillis) {
+        this.enabled = enabled;
+        this.cache = new LruCache<>(maxSize, ttlMillis);
+    }
+
+    /**
+     * 获取图书详情，未命中时通过loader加载并写入缓存
+     * 返回副本，调用方修改不会影响缓存
+     */
+    public BookDetailDTO get(Long id, Function<Long, BookDetailDTO> loader) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+
+        BookDetailDTO detail = cache.get(id);
+        if (detail == null) {
+            long stamp = cache.stamp(id);
+            detail = loader.apply(id);
+            cache.putIfUnchanged(id, detail, stamp);
+        }
+        return copy(detail);
+    }
+
+    /**
+     * 使图书缓存失效；处于事务中时提交后再失效一次
+     */
+    public void invalidateAfterCommit(Long id) {
+        cache.invalidate(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(id);
+                }
+            });
+        }
+    }
+
+    /**
+     * 清空缓存（分类名称变化等影响所有图书时调用）
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public CacheStatisticsDTO getStatistics() {
+        CacheStatisticsDTO statistics = new CacheStatisticsDTO();
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+        statistics.setSize(cache.size());
+        statistics.setMaxSize(cache.getMaxSize());
+        statistics.setHits(hits);
+        statistics.setMisses(misses);
+        statistics.setEvictions(cache.getEvictions());
+        statistics.setHitRate(hits + misses == 0 ? 0D : (double) hits / (hits + misses));
+        return statistics;
+    }
+
+    private static BookDetailDTO copy(BookDetailDTO source) {
+        BookDetailDTO target = new BookDetailDTO();
+        BeanUtils.copyProperties(source, target);
+        return target;
+    }
+}
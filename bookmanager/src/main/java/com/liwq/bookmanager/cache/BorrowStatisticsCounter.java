@@ -0,0 +1,236 @@
+package com.liwq.bookmanager.cache;
+
+import com.liwq.bookmanager.dto.BorrowStatisticsDTO;
+import com.liwq.bookmanager.mapper.BorrowRecordMapper;
+import com.liwq.bookmanager.mapper.UserMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 借阅统计计数器
+ * 借阅、归还和逾期状态变化在事务提交后增减内存计数，统计接口直接读取计数，不再扫描borrow_records。
+ * 活跃用户数和总用户数无法按单条记录增减，只在对账时刷新；
+ * 启动后加载一次，之后定期用一次聚合查询与数据库对账，修正多实例部署或异常导致的偏差。
+ */
+@Slf4j
+@Component
+public class BorrowStatisticsCounter {
+
+    private final BorrowRecordMapper borrowRecordMapper;
+
+    private final UserMapper userMapper;
+
+    /**
+     * 当前计数
+     */
+    private final Counts counts = new Counts();
+
+    /**
+     * 对账查询期间累加的变化，查询结束后叠加到查询结果上
+     */
+    private final Counts pending = new Counts();
+
+    /**
+     * 是否正在执行对账查询，由lock保护
+     */
+    private boolean reconciling;
+
+    private volatile long totalUsers;
+
+    private volatile long activeUsers;
+
+    /**
+     * 是否已从数据库加载过计数
+     */
+    private volatile boolean loaded;
+
+    /**
+     * 计数增减持读锁可并发执行；对账只在开始和写入结果时短暂持写锁，聚合查询在锁外执行
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public BorrowStatisticsCounter(BorrowRecordMapper borrowRecordMapper, UserMapper userMapper) {
+        this.borrowRecordMapper = borrowRecordMapper;
+        this.userMapper = userMapper;
+    }
+
+    /**
+     * 应用启动后在后台加载计数
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            log.error("借阅统计加载失败，将在下次对账时重试", e);
+        }
+    }
+
+    /**
+     * 获取当前统计数据
+     */
+    public BorrowStatisticsDTO getStatistics() {
+        if (!loaded) {
+            throw new RuntimeException("借阅统计正在加载，请稍后再试");
+        }
+        BorrowStatisticsDTO statistics = new BorrowStatisticsDTO();
+        statistics.setTotalBorrows(counts.totalBorrows.get());
+        statistics.setCurrentBorrowing(counts.currentBorrowing.get());
+        statistics.setOverdueCount(counts.overdueCount.get());
+        statistics.setReturnedCount(counts.returnedCount.get());
+        statistics.setTotalUsers(totalUsers);
+        statistics.setActiveUsers(activeUsers);
+        return statistics;
+    }
+
+    /**
+     * 新增借阅记录
+     */
+    public void onBorrowed() {
+        afterCommit(1, 1, 0, 0);
+    }
+
+    /**
+     * 借阅记录归还
+     *
+     * @param previousStatus 归还前的状态（borrowing或overdue）
+     */
+    public void onReturned(String previousStatus) {
+        if ("overdue".equals(previousStatus)) {
+            afterCommit(0, 0, -1, 1);
+        } else {
+            afterCommit(0, -1, 0, 1);
+        }
+    }
+
+    /**
+     * 借阅中记录批量标记为逾期
+     */
+    public void onOverdue(int count) {
+        afterCommit(0, -count, count, 0);
+    }
+
+    /**
+     * 定期与数据库对账（默认每5分钟）
+     * 查询在锁外执行，查询期间提交的变化同时记入pending，写入时叠加到查询结果上，不会被覆盖。
+     * 事务在查询之前提交、但提交回调在查询期间才执行的变化会被多计一次，下次对账时修正。
+     */
+    @Scheduled(fixedDelayString = "${borrow-stats.reconcile-interval:300000}")
+    public synchronized void reconcile() {
+        lock.writeLock().lock();
+        try {
+            pending.reset();
+            reconciling = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        BorrowStatisticsDTO actual;
+        long users;
+        try {
+            actual = borrowRecordMapper.selectBorrowStatistics();
+            users = userMapper.selectCount(null);
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                reconciling = false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        long drift;
+        lock.writeLock().lock();
+        try {
+            long total = actual.getTotalBorrows() + pending.totalBorrows.get();
+            long borrowing = actual.getCurrentBorrowing() + pending.currentBorrowing.get();
+            long overdue = actual.getOverdueCount() + pending.overdueCount.get();
+            long returned = actual.getReturnedCount() + pending.returnedCount.get();
+            drift = Math.abs(total - counts.totalBorrows.get())
+                    + Math.abs(borrowing - counts.currentBorrowing.get())
+                    + Math.abs(overdue - counts.overdueCount.get())
+                    + Math.abs(returned - counts.returnedCount.get());
+            counts.totalBorrows.set(total);
+            counts.currentBorrowing.set(borrowing);
+            counts.overdueCount.set(overdue);
+            counts.returnedCount.set(returned);
+            reconciling = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        activeUsers = actual.getActiveUsers();
+        totalUsers = users;
+
+        if (loaded && drift > 0) {
+            log.info("借阅统计对账修正，偏差合计{}", drift);
+        }
+        loaded = true;
+    }
+
+    /**
+     * 处于事务中时提交后再执行，回滚时不计数
+     */
+    private void afterCommit(long total, long borrowing, long overdue, long returned) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(total, borrowing, overdue, returned);
+                }
+            });
+        } else {
+            apply(total, borrowing, overdue, returned);
+        }
+    }
+
+    private void apply(long total, long borrowing, long overdue, long returned) {
+        lock.readLock().lock();
+        try {
+            counts.add(total, borrowing, overdue, returned);
+            if (reconciling) {
+                pending.add(total, borrowing, overdue, returned);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 一组借阅计数
+     */
+    private static class Counts {
+
+        private final AtomicLong totalBorrows = new AtomicLong();
+
+        private final AtomicLong currentBorrowing = new AtomicLong();
+
+        private final AtomicLong overdueCount = new AtomicLong();
+
+        private final AtomicLong returnedCount = new AtomicLong();
+
+        void add(long total, long borrowing, long overdue, long returned) {
+            totalBorrows.addAndGet(total);
+            currentBorrowing.addAndGet(borrowing);
+            overdueCount.addAndGet(overdue);
+            returnedCount.addAndGet(returned);
+        }
+
+        void reset() {
+            totalBorrows.set(0);
+            currentBorrowing.set(0);
+            overdueCount.set(0);
+            returnedCount.set(0);
+        }
+    }
+}
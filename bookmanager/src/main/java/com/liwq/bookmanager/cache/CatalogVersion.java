@@ -0,0 +1,138 @@
+package com.liwq.bookmanager.cache;
+
+import com.liwq.bookmanager.dto.TableVersionDTO;
+import com.liwq.bookmanager.mapper.BookCategoryMapper;
+import com.liwq.bookmanager.mapper.BookMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.ZoneId;
+
+/**
+ * 图书目录版本号
+ * 版本取自数据库（表的最近更新时间和行数），多个实例对同一份数据给出相同的ETag，任一实例写入后所有实例的ETag都会变化；
+ * 列表接口以版本号作为ETag，版本未变时直接返回304，不执行列表查询。
+ * 每个实例最多每refresh-interval查询一次版本；本实例写入时立即丢弃缓存的版本，事务提交后再丢弃一次。
+ * update_time只精确到秒，且修改时间早于事务提交时间，最近一次修改距今不足settle-seconds时不返回ETag，
+ * 避免读到旧数据的响应以之后不再变化的版本号被浏览器缓存。
+ */
+@Component
+public class CatalogVersion {
+
+    private final BookMapper bookMapper;
+
+    private final BookCategoryMapper bookCategoryMapper;
+
+    private final long refreshIntervalMillis;
+
+    private final long settleSeconds;
+
+    private volatile Snapshot bookVersion;
+
+    private volatile Snapshot categoryVersion;
+
+    public CatalogVersion(BookMapper bookMapper, BookCategoryMapper bookCategoryMapper,
+                          @Value("${catalog-version.refresh-interval:1000}") long refreshIntervalMillis,
+                          @Value("${catalog-version.settle-seconds:5}") long settleSeconds) {
+        this.bookMapper = bookMapper;
+        this.bookCategoryMapper = bookCategoryMapper;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.settleSeconds = settleSeconds;
+    }
+
+    /**
+     * 图书列表ETag（分类名称会出现在图书列表中，分类变化时同样失效），版本暂不稳定时返回null
+     */
+    public String bookETag() {
+        String books = bookVersion().tag;
+        String categories = categoryVersion().tag;
+        if (books == null || categories == null) {
+            return null;
+        }
+        return "\"b-" + books + "-" + categories + "\"";
+    }
+
+    /**
+     * 分类列表ETag，版本暂不稳定时返回null
+     */
+    public String categoryETag() {
+        String categories = categoryVersion().tag;
+        return categories == null ? null : "\"c-" + categories + "\"";
+    }
+
+    /**
+     * 图书新增、修改、删除或可借数量变化
+     */
+    public void onBookChanged() {
+        discard(() -> bookVersion = null);
+    }
+
+    /**
+     * 分类新增、修改或删除
+     */
+    public void onCategoryChanged() {
+        discard(() -> categoryVersion = null);
+    }
+
+    private Snapshot bookVersion() {
+        Snapshot snapshot = bookVersion;
+        if (snapshot == null || snapshot.isStale(refreshIntervalMillis)) {
+            snapshot = toSnapshot(bookMapper.selectTableVersion());
+            bookVersion = snapshot;
+        }
+        return snapshot;
+    }
+
+    private Snapshot categoryVersion() {
+        Snapshot snapshot = categoryVersion;
+        if (snapshot == null || snapshot.isStale(refreshIntervalMillis)) {
+            snapshot = toSnapshot(bookCategoryMapper.selectTableVersion());
+            categoryVersion = snapshot;
+        }
+        return snapshot;
+    }
+
+    private Snapshot toSnapshot(TableVersionDTO version) {
+        long total = version.getTotal() == null ? 0 : version.getTotal();
+        if (version.getLastUpdate() == null) {
+            return new Snapshot("0-" + total);
+        }
+        if (version.getNow() != null && version.getLastUpdate().isAfter(version.getNow().minusSeconds(settleSeconds))) {
+            return new Snapshot(null);
+        }
+        long lastUpdate = version.getLastUpdate().atZone(ZoneId.systemDefault()).toEpochSecond();
+        return new Snapshot(Long.toString(lastUpdate, 36) + "-" + Long.toString(total, 36));
+    }
+
+    private void discard(Runnable action) {
+        action.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * 从数据库读取的版本，tag为null表示最近有修改、版本暂不稳定
+     */
+    private static class Snapshot {
+
+        private final String tag;
+
+        private final long loadedAt = System.currentTimeMillis();
+
+        Snapshot(String tag) {
+            this.tag = tag;
+        }
+
+        boolean isStale(long refreshIntervalMillis) {
+            return System.currentTimeMillis() - loadedAt >= refreshIntervalMillis;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.liwq.bookmanager.cache;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.liwq.bookmanager.mapper.BookCategoryMapper;
+import com.liwq.bookmanager.model.BookCategory;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 图书分类字典缓存
+ * 分类数据量小且很少变动，首次使用时整表加载到内存，分类增删改后失效重建，
+ * 图书列表据此解析分类名称，无需逐条查询book_categories
+ */
+@Component
+public class CategoryCache {
+
+    private final BookCategoryMapper bookCategoryMapper;
+
+    /**
+     * 当前快照，为null表示尚未加载或已失效
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * 失效计数，加载期间发生失效时丢弃本次加载结果，避免旧数据覆盖失效标记
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    public CategoryCache(BookCategoryMapper bookCategoryMapper) {
+        this.bookCategoryMapper = bookCategoryMapper;
+    }
+
+    /**
+     * 根据ID获取分类，不存在时返回null
+     */
+    public BookCategory get(Long id) {
+        if (id == null) {
+            return null;
+        }
+        BookCategory category = getSnapshot().byId.get(id);
+        if (category == null) {
+            // 快照中没有时回查数据库，防止其他实例新增的分类被误判为不存在
+            category = bookCategoryMapper.selectById(id);
+            if (category != null) {
+                invalidate();
+            }
+        }
+        return category;
+    }
+
+    /**
+     * 根据ID获取分类名称，不存在时返回null
+     */
+    public String getCategoryName(Long id) {
+        BookCategory category = get(id);
+        return category == null ? null : category.getCategoryName();
+    }
+
+    /**
+     * 获取所有分类，按排序顺序升序、创建时间倒序排列
+     */
+    public List<BookCategory> getAll() {
+        return getSnapshot().sorted;
+    }
+
+    /**
+     * 使缓存失效，下次访问时重新加载
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    long loadGeneration = generation.get();
+                    current = load();
+                    if (generation.get() == loadGeneration) {
+                        snapshot = current;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    private Snapshot load() {
+        LambdaQueryWrapper<BookCategory> wrapper = new LambdaQueryWrapper<>();
+        wrapper.orderByAsc(BookCategory::getSortOrder)
+                .orderByDesc(BookCategory::getCreateTime);
+        List<BookCategory> categories = bookCategoryMapper.selectList(wrapper);
+
+        Map<Long, BookCategory> byId = new LinkedHashMap<>();
+        for (BookCategory category : categories) {
+            byId.put(category.getId(), category);
+        }
+        return new Snapshot(Collections.unmodifiableMap(byId), Collections.unmodifiableList(categories));
+    }
+
+    /**
+     * 不可变快照，保证按ID索引和排序列表总是同一次加载的结果
+     */
+    private static class Snapshot {
+
+        private final Map<Long, BookCategory> byId;
+
+        private final List<BookCategory> sorted;
+
+        private Snapshot(Map<Long, BookCategory> byId, List<BookCategory> sorted) {
+            this.byId = byId;
+            this.sorted = sorted;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.liwq.bookmanager.cache;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.liwq.bookmanager.dto.HotStockStatisticsDTO;
+import com.liwq.bookmanager.mapper.BookMapper;
+import com.liwq.bookmanager.model.Book;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 热门图书内存库存闸门
+ * 新书上架等场景下大量用户同时借阅同一本书，都会排队等待books表同一行的行锁。
+ * 对开启闸门的图书，借阅前先在内存计数器上扣减名额，无库存时直接拒绝，不再开启数据库事务；
+ * 事务提交或回滚后归还/确认名额，并定期与books.available_count对账。
+ * 数据库中的条件更新仍是库存的最终保证，闸门只负责提前拦截注定失败的请求。
+ */
+@Component
+public class HotBookStockGate {
+
+    /**
+     * 未开启闸门的图书使用的空名额，不做任何计数
+     */
+    private static final Permit PASS_THROUGH = committed -> {
+    };
+
+    private final BookMapper bookMapper;
+
+    private final Map<Long, StockCounter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 启动时默认开启闸门的图书ID
+     */
+    @Value("${stock-gate.book-ids:}")
+    private List<Long> initialBookIds;
+
+    public HotBookStockGate(BookMapper bookMapper) {
+        this.bookMapper = bookMapper;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void enableInitialBooks() {
+        for (Long bookId : initialBookIds) {
+            enable(bookId);
+        }
+    }
+
+    /**
+     * 为图书开启闸门，名额初始化为当前可借数量
+     */
+    public void enable(Long bookId) {
+        Book book = bookMapper.selectById(bookId);
+        if (book == null) {
+            throw new RuntimeException("图书不存在");
+        }
+        counters.computeIfAbsent(bookId, id -> new StockCounter(book.getAvailableCount()));
+    }
+
+    /**
+     * 关闭图书的闸门
+     */
+    public void disable(Long bookId) {
+        counters.remove(bookId);
+    }
+
+    /**
+     * 申请借阅名额
+     *
+     * @return 名额，未开启闸门的图书总是放行；返回null表示闸门内已无库存
+     */
+    public Permit tryAcquire(Long bookId) {
+        StockCounter counter = counters.get(bookId);
+        if (counter == null) {
+            return PASS_THROUGH;
+        }
+        return counter.tryAcquire() ? counter::complete : null;
+    }
+
+    /**
+     * 归还事务提交后增加名额
+     */
+    public void onStockReturned(Long bookId) {
+        StockCounter counter = counters.get(bookId);
+        if (counter != null) {
+            counter.available.incrementAndGet();
+        }
+    }
+
+    /**
+     * 定期与数据库对账：名额 = 数据库可借数量 - 已放行但未结束的借阅数
+     */
+    @Scheduled(fixedDelayString = "${stock-gate.reconcile-interval:30000}")
+    public void reconcile() {
+        if (counters.isEmpty()) {
+            return;
+        }
+        LambdaQueryWrapper<Book> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(Book::getId, Book::getAvailableCount)
+                .in(Book::getId, counters.keySet());
+        for (Book book : bookMapper.selectList(wrapper)) {
+            StockCounter counter = counters.get(book.getId());
+            if (counter != null) {
+                counter.available.set(Math.max(0, book.getAvailableCount() - counter.inflight.get()));
+            }
+        }
+    }
+
+    /**
+     * 获取各图书闸门的统计数据
+     */
+    public List<HotStockStatisticsDTO> getStatistics() {
+        List<HotStockStatisticsDTO> statistics = new ArrayList<>();
+        counters.forEach((bookId, counter) -> {
+            HotStockStatisticsDTO dto = new HotStockStatisticsDTO();
+            dto.setBookId(bookId);
+            dto.setAvailable(counter.available.get());
+            dto.setInflight(counter.inflight.get());
+            dto.setAcquired(counter.acquired.sum());
+            dto.setRejected(counter.rejected.sum());
+            dto.setRolledBack(counter.rolledBack.sum());
+            statistics.add(dto);
+        });
+        return statistics;
+    }
+
+    /**
+     * 借阅名额，借阅事务结束后必须调用complete
+     */
+    @FunctionalInterface
+    public interface Permit {
+
+        /**
+         * 结束名额
+         *
+         * @param committed 借阅事务是否已提交，未提交时归还名额
+         */
+        void complete(boolean committed);
+    }
+
+    /**
+     * 单本图书的计数器，统计项使用LongAdder分段累加，避免热点图书上的计数竞争
+     */
+    private static class StockCounter {
+
+        private final AtomicInteger available;
+
+        private final AtomicInteger inflight = new AtomicInteger();
+
+        private final LongAdder acquired = new LongAdder();
+
+        private final LongAdder rejected = new LongAdder();
+
+        private final LongAdder rolledBack = new LongAdder();
+
+        private StockCounter(int available) {
+            this.available = new AtomicInteger(available);
+        }
+
+        private boolean tryAcquire() {
+            int current;
+            do {
+                current = available.get();
+                if (current <= 0) {
+                    rejected.increment();
+                    return false;
+                }
+            } while (!available.compareAndSet(current, current - 1));
+            inflight.incrementAndGet();
+            acquired.increment();
+            return true;
+        }
+
+        private void complete(boolean committed) {
+            inflight.decrementAndGet();
+            if (!committed) {
+                available.incrementAndGet();
+                rolledBack.increment();
+            }
+        }
+    }
+}
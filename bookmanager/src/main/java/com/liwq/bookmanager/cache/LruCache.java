@@ -0,0 +1,179 @@
+package com.liwq.bookmanager.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 有界LRU缓存，支持过期时间、命中统计和防止旧值回填的版本校验
+ * 容量超过上限时淘汰最久未访问的条目；条目可按统一TTL或指定的过期时间点失效。
+ * 为避免"读库→其他线程更新并失效→读线程写回旧值"的竞争，加载前先取版本号，
+ * 写回时通过putIfUnchanged校验期间没有发生失效。版本号按key哈希分段，失效只影响同段的key。
+ */
+public class LruCache<K, V> {
+
+    private static final int VERSION_STRIPES = 64;
+
+    private final int maxSize;
+
+    private final long ttlMillis;
+
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private final long[] versions = new long[VERSION_STRIPES];
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize   最大条目数
+     * @param ttlMillis 默认存活时间（毫秒），小于等于0表示不按时间过期
+     */
+    public LruCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > LruCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 获取缓存值，不存在或已过期时返回null
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+            entries.remove(key);
+            evictions.increment();
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * 获取key当前的版本号，加载数据前调用，配合putIfUnchanged使用
+     */
+    public synchronized long stamp(K key) {
+        return versions[stripe(key)];
+    }
+
+    /**
+     * 写入缓存，使用默认存活时间
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, defaultExpireAt()));
+    }
+
+    /**
+     * 仅当stamp之后该key没有被失效时写入缓存，使用默认存活时间
+     *
+     * @return 是否写入
+     */
+    public boolean putIfUnchanged(K key, V value, long stamp) {
+        return putIfUnchanged(key, value, stamp, defaultExpireAt());
+    }
+
+    /**
+     * 仅当stamp之后该key没有被失效时写入缓存，并指定过期时间点
+     *
+     * @param expireAtMillis 过期时间点（毫秒时间戳），小于等于0表示不按时间过期
+     * @return 是否写入
+     */
+    public synchronized boolean putIfUnchanged(K key, V value, long stamp, long expireAtMillis) {
+        if (versions[stripe(key)] != stamp) {
+            return false;
+        }
+        entries.put(key, new Entry<>(value, expireAtMillis));
+        return true;
+    }
+
+    /**
+     * 更新已缓存的值，不存在时不写入；同时使进行中的加载失效，避免更新前读出的数据覆盖更新结果
+     */
+    public synchronized void computeIfPresent(K key, UnaryOperator<V> updater) {
+        versions[stripe(key)]++;
+        Entry<V> entry = entries.get(key);
+        if (entry != null) {
+            entries.put(key, new Entry<>(updater.apply(entry.value), entry.expireAt));
+        }
+    }
+
+    /**
+     * 使单个key失效
+     */
+    public synchronized void invalidate(K key) {
+        versions[stripe(key)]++;
+        entries.remove(key);
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void invalidateAll() {
+        for (int i = 0; i < VERSION_STRIPES; i++) {
+            versions[i]++;
+        }
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private long defaultExpireAt() {
+        return ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : 0;
+    }
+
+    private int stripe(K key) {
+        int h = key == null ? 0 : key.hashCode();
+        return (h ^ (h >>> 16)) & (VERSION_STRIPES - 1);
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+
+        private final long expireAt;
+
+        private Entry(V value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+        private boolean isExpired(long now) {
+            return expireAt > 0 && now >= expireAt;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.liwq.bookmanager.cache;
+
+import com.liwq.bookmanager.dto.BorrowQuotaDTO;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 用户借阅状态快照（不可变），用于借阅前置校验
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public class UserLoanState {
+
+    /**
+     * 用户状态：0禁用，1启用
+     */
+    private final Integer userStatus;
+
+    /**
+     * 逾期未还数量
+     */
+    private final long overdueCount;
+
+    /**
+     * 借阅中数量
+     */
+    private final long borrowingCount;
+
+    /**
+     * 借阅中的图书ID
+     */
+    private final Set<Long> borrowingBookIds;
+
+    /**
+     * 未到期借阅中记录最早的应还日期，没有时为null；到达该时间后逾期数会变化，快照失效
+     */
+    private final LocalDateTime nextDueDate;
+
+    public UserLoanState(Integer userStatus, long overdueCount, long borrowingCount, Set<Long> borrowingBookIds,
+                         LocalDateTime nextDueDate) {
+        this.userStatus = userStatus;
+        this.overdueCount = overdueCount;
+        this.borrowingCount = borrowingCount;
+        this.borrowingBookIds = Set.copyOf(borrowingBookIds);
+        this.nextDueDate = nextDueDate;
+    }
+
+    /**
+     * 是否已有借阅到期（快照中的逾期数已过时）
+     */
+    public boolean isExpired(LocalDateTime now) {
+        return nextDueDate != null && !now.isBefore(nextDueDate);
+    }
+
+    /**
+     * 借阅一本图书后的状态；已包含该图书时（缓存是在借阅提交后加载的）原样返回
+     */
+    public UserLoanState withBorrowed(Long bookId, LocalDateTime dueDate) {
+        if (borrowingBookIds.contains(bookId)) {
+            return this;
+        }
+        Set<Long> bookIds = new HashSet<>(borrowingBookIds);
+        bookIds.add(bookId);
+        LocalDateTime nextDue = nextDueDate == null || dueDate.isBefore(nextDueDate) ? dueDate : nextDueDate;
+        return new UserLoanState(userStatus, overdueCount, borrowingCount + 1, bookIds, nextDue);
+    }
+
+    /**
+     * 转换为针对某本图书的借阅校验数据
+     */
+    public BorrowQuotaDTO toQuota(Long bookId) {
+        BorrowQuotaDTO quota = new BorrowQuotaDTO();
+        quota.setUserStatus(userStatus);
+        quota.setOverdueCount(overdueCount);
+        quota.setBorrowingCount(borrowingCount);
+        quota.setSameBookCount(borrowingBookIds.contains(bookId) ? 1L : 0L);
+        return quota;
+    }
+}
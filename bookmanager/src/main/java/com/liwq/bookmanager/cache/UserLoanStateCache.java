@@ -0,0 +1,161 @@
+package com.liwq.bookmanager.cache;
+
+import com.liwq.bookmanager.dto.BorrowQuotaDTO;
+import com.liwq.bookmanager.mapper.BorrowRecordMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 用户借阅状态缓存
+ * 缓存每个用户的借阅中数量、逾期数量和借阅中的图书，借阅前置校验命中缓存时不再查询borrow_records，未命中时一次聚合查询加载。
+ * 借阅在事务提交后直接更新缓存的状态（连续借阅不必重新加载）；归还、逾期更新和用户状态变更在事务提交后使对应用户失效；
+ * 逾期按应还日期判断，快照记录最早的应还日期，到期后视为未命中重新加载；
+ * 开启校验模式时每次命中都会与数据库比对，不一致时记录日志并以数据库为准。
+ */
+@Slf4j
+@Component
+public class UserLoanStateCache {
+
+    private final BorrowRecordMapper borrowRecordMapper;
+
+    private final LruCache<Long, UserLoanState> cache;
+
+    private final boolean enabled;
+
+    private final boolean verify;
+
+    private final LongAdder mismatches = new LongAdder();
+
+    public UserLoanStateCache(BorrowRecordMapper borrowRecordMapper,
+                              @Value("${loan-cache.enabled:true}") boolean enabled,
+                              @Value("${loan-cache.max-size:10000}") int maxSize,
+                              @Value("${loan-cache.verify:false}") boolean verify) {
+        this.borrowRecordMapper = borrowRecordMapper;
+        this.enabled = enabled;
+        this.verify = verify;
+        this.cache = new LruCache<>(maxSize, 0);
+    }
+
+    /**
+     * 获取用户借阅某本图书的校验数据，用户不存在时返回null
+     */
+    public BorrowQuotaDTO getQuota(Long userId, Long bookId) {
+        if (!enabled) {
+            return borrowRecordMapper.selectBorrowQuota(userId, bookId);
+        }
+
+        UserLoanState state = cache.get(userId);
+        if (state != null && state.isExpired(LocalDateTime.now())) {
+            // 有借阅已到期，缓存中的逾期数已过时
+            cache.invalidate(userId);
+            state = null;
+        }
+        if (state != null) {
+            if (verify) {
+                UserLoanState actual = load(userId);
+                if (!state.equals(actual)) {
+                    mismatches.increment();
+                    log.warn("用户借阅状态缓存与数据库不一致，userId={}，cached={}，actual={}", userId, state, actual);
+                    cache.invalidate(userId);
+                    return actual == null ? null : actual.toQuota(bookId);
+                }
+            }
+            return state.toQuota(bookId);
+        }
+
+        long stamp = cache.stamp(userId);
+        state = load(userId);
+        if (state == null) {
+            return null;
+        }
+        cache.putIfUnchanged(userId, state, stamp);
+        return state.toQuota(bookId);
+    }
+
+    /**
+     * 借阅事务提交后更新缓存：借阅中数量加1并记录该图书；未缓存时不加载
+     * 事务提交前加载的状态不包含本次借阅，提交后加载的状态已包含该图书，两种情况更新后都正确
+     */
+    public void onBorrowedAfterCommit(Long userId, Long bookId, LocalDateTime dueDate) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.computeIfPresent(userId, state -> state.withBorrowed(bookId, dueDate));
+                }
+            });
+        } else {
+            cache.computeIfPresent(userId, state -> state.withBorrowed(bookId, dueDate));
+        }
+    }
+
+    /**
+     * 使用户缓存失效；处于事务中时提交后再失效一次，防止并发读取把事务提交前的旧状态写回缓存
+     */
+    public void invalidateAfterCommit(Long userId) {
+        cache.invalidate(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(userId);
+                }
+            });
+        }
+    }
+
+    /**
+     * 清空缓存（批量更新逾期状态后调用），处于事务中时提交后再清空一次
+     */
+    public void invalidateAllAfterCommit() {
+        cache.invalidateAll();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidateAll();
+                }
+            });
+        }
+    }
+
+    public long getHits() {
+        return cache.getHits();
+    }
+
+    public long getMisses() {
+        return cache.getMisses();
+    }
+
+    public long getEvictions() {
+        return cache.getEvictions();
+    }
+
+    public long getMismatches() {
+        return mismatches.sum();
+    }
+
+    private UserLoanState load(Long userId) {
+        BorrowQuotaDTO quota = borrowRecordMapper.selectBorrowQuota(userId, null);
+        if (quota == null) {
+            return null;
+        }
+        Set<Long> bookIds = new HashSet<>();
+        if (StringUtils.hasText(quota.getBorrowingBookIds())) {
+            for (String id : quota.getBorrowingBookIds().split(",")) {
+                bookIds.add(Long.valueOf(id));
+            }
+        }
+        return new UserLoanState(quota.getUserStatus(), quota.getOverdueCount(), quota.getBorrowingCount(), bookIds,
+                quota.getNextDueDate());
+    }
+}
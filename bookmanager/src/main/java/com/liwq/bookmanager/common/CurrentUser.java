@@ -0,0 +1,55 @@
+package com.liwq.bookmanager.common;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 当前登录用户（不可变），由JWT令牌解析得到
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public class CurrentUser {
+
+    /**
+     * 用户ID
+     */
+    private final Long userId;
+
+    /**
+     * 用户名
+     */
+    private final String username;
+
+    /**
+     * 角色：admin管理员，user普通用户
+     */
+    private final String role;
+
+    /**
+     * 令牌过期时间（毫秒时间戳）
+     */
+    private final long expiresAt;
+
+    public CurrentUser(Long userId, String username, String role, long expiresAt) {
+        this.userId = userId;
+        this.username = username;
+        this.role = role;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * 是否为管理员
+     */
+    public boolean isAdmin() {
+        return "admin".equals(role);
+    }
+
+    /**
+     * 令牌是否已过期
+     */
+    public boolean isExpired(long nowMillis) {
+        return expiresAt <= nowMillis;
+    }
+}
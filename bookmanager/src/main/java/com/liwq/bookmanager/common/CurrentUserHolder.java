@@ -0,0 +1,40 @@
+package com.liwq.bookmanager.common;
+
+/**
+ * 当前登录用户持有者
+ * 由JwtInterceptor在请求开始时设置、请求结束时清除；异步任务由AsyncConfig的TaskDecorator传递到工作线程。
+ * 定时任务等没有登录用户的线程中get返回null。
+ */
+public class CurrentUserHolder {
+
+    private static final ThreadLocal<CurrentUser> HOLDER = new ThreadLocal<>();
+
+    private CurrentUserHolder() {
+    }
+
+    public static void set(CurrentUser user) {
+        HOLDER.set(user);
+    }
+
+    /**
+     * 获取当前登录用户，未登录时返回null
+     */
+    public static CurrentUser get() {
+        return HOLDER.get();
+    }
+
+    /**
+     * 获取当前登录用户，未登录时抛出异常
+     */
+    public static CurrentUser require() {
+        CurrentUser user = HOLDER.get();
+        if (user == null) {
+            throw new RuntimeException("未登录或登录已过期");
+        }
+        return user;
+    }
+
+    public static void clear() {
+        HOLDER.remove();
+    }
+}
@@ -0,0 +1,124 @@
+package com.liwq.bookmanager.common;
+
+import com.liwq.bookmanager.dto.LockContentionDTO;
+import com.liwq.bookmanager.exception.ConcurrentUpdateException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 乐观锁重试执行器
+ * 每次尝试在独立事务中执行，抛出ConcurrentUpdateException时回滚并重新读取后重试。
+ * 重试不能放在同一个事务中：可重复读隔离级别下事务内再次读取仍是旧快照，版本号永远对不上。
+ * 按操作统计执行、冲突和重试耗尽次数，用于观察热点数据的争用程度。
+ */
+@Slf4j
+@Component
+public class OptimisticLockExecutor {
+
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * 最大尝试次数（含首次）
+     */
+    private final int maxAttempts;
+
+    /**
+     * 重试前等待的基准时间（毫秒），第n次重试等待n倍基准时间加随机抖动
+     */
+    private final long backoffMillis;
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    public OptimisticLockExecutor(TransactionTemplate transactionTemplate,
+                                  @Value("${optimistic-lock.max-attempts:3}") int maxAttempts,
+                                  @Value("${optimistic-lock.backoff:10}") long backoffMillis) {
+        this.transactionTemplate = transactionTemplate;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = backoffMillis;
+    }
+
+    /**
+     * 按配置的次数重试
+     */
+    public <T> T execute(String operation, Supplier<T> action) {
+        return execute(operation, maxAttempts, action);
+    }
+
+    public void execute(String operation, Runnable action) {
+        execute(operation, maxAttempts, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * @param attempts 最大尝试次数，版本号来自客户端时重试没有意义，传1
+     */
+    public <T> T execute(String operation, int attempts, Supplier<T> action) {
+        Stats operationStats = stats.computeIfAbsent(operation, key -> new Stats());
+        operationStats.executions.increment();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> action.get());
+            } catch (ConcurrentUpdateException e) {
+                operationStats.conflicts.increment();
+                if (attempt >= attempts) {
+                    operationStats.failures.increment();
+                    log.warn("{}版本冲突，已尝试{}次", operation, attempt);
+                    throw e;
+                }
+                backoff(attempt);
+            }
+        }
+    }
+
+    /**
+     * 获取各操作的冲突统计
+     */
+    public List<LockContentionDTO> getStatistics() {
+        List<LockContentionDTO> result = new ArrayList<>();
+        stats.forEach((operation, operationStats) -> {
+            LockContentionDTO dto = new LockContentionDTO();
+            dto.setOperation(operation);
+            long executions = operationStats.executions.sum();
+            long conflicts = operationStats.conflicts.sum();
+            dto.setExecutions(executions);
+            dto.setConflicts(conflicts);
+            dto.setFailures(operationStats.failures.sum());
+            dto.setConflictRate(executions == 0 ? 0.0 : (double) conflicts / executions);
+            result.add(dto);
+        });
+        return result;
+    }
+
+    private void backoff(int attempt) {
+        if (backoffMillis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(backoffMillis * attempt + ThreadLocalRandom.current().nextLong(backoffMillis));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrentUpdateException();
+        }
+    }
+
+    private static class Stats {
+
+        private final LongAdder executions = new LongAdder();
+
+        private final LongAdder conflicts = new LongAdder();
+
+        private final LongAdder failures = new LongAdder();
+    }
+}
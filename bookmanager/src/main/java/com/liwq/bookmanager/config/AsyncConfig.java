@@ -0,0 +1,59 @@
+package com.liwq.bookmanager.config;
+
+import com.liwq.bookmanager.common.CurrentUser;
+import com.liwq.bookmanager.common.CurrentUserHolder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * 异步任务配置类
+ */
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+
+    @Value("${async.core-pool-size:4}")
+    private int corePoolSize;
+
+    @Value("${async.max-pool-size:8}")
+    private int maxPoolSize;
+
+    @Value("${async.queue-capacity:1000}")
+    private int queueCapacity;
+
+    /**
+     * 默认异步任务线程池，提交任务时把当前登录用户传递到工作线程
+     */
+    @Bean
+    public ThreadPoolTaskExecutor taskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("async-");
+        executor.setTaskDecorator(currentUserTaskDecorator());
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 在提交线程捕获当前登录用户，任务执行期间设置到工作线程，执行完毕后清除
+     */
+    private TaskDecorator currentUserTaskDecorator() {
+        return runnable -> {
+            CurrentUser user = CurrentUserHolder.get();
+            return () -> {
+                CurrentUserHolder.set(user);
+                try {
+                    runnable.run();
+                } finally {
+                    CurrentUserHolder.clear();
+                }
+            };
+        };
+    }
+}
@@ -0,0 +1,47 @@
+package com.liwq.bookmanager.config;
+
+import com.baomidou.mybatisplus.annotation.DbType;
+import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.inner.OptimisticLockerInnerInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * MyBatis-Plus配置类
+ */
+@Configuration
+public class MybatisPlusConfig {
+
+    /**
+     * 数据库方言，决定分页语句的改写方式（如MySQL使用LIMIT）
+     */
+    @Value("${pagination.db-type:mysql}")
+    private String dbType;
+
+    /**
+     * 单页最大条数，超出时按该值截断
+     */
+    @Value("${pagination.max-limit:100}")
+    private Long maxLimit;
+
+    /**
+     * 注册MyBatis-Plus插件
+     */
+    @Bean
+    public MybatisPlusInterceptor mybatisPlusInterceptor() {
+        MybatisPlusInterceptor interceptor = new MybatisPlusInterceptor();
+
+        // 分页插件：改写LIMIT语句，COUNT查询会去掉ORDER BY以及未被条件引用的LEFT JOIN
+        PaginationInnerInterceptor paginationInterceptor = new PaginationInnerInterceptor(DbType.getDbType(dbType));
+        paginationInterceptor.setMaxLimit(maxLimit);
+        paginationInterceptor.setOptimizeJoin(true);
+        interceptor.addInnerInterceptor(paginationInterceptor);
+
+        // 乐观锁插件：实体带@Version字段时，updateById附加WHERE version = ?并将版本号加1
+        interceptor.addInnerInterceptor(new OptimisticLockerInnerInterceptor());
+
+        return interceptor;
+    }
+}
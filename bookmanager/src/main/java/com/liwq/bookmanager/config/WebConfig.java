@@ -1,12 +1,16 @@
 package com.liwq.bookmanager.config;
 
 import com.liwq.bookmanager.interceptor.JwtInterceptor;
+import com.liwq.bookmanager.resolver.CurrentUserArgumentResolver;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.List;
+
 /**
  * Web MVC配置类
  */
@@ -15,6 +19,7 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 public class WebConfig implements WebMvcConfigurer {
 
     private final JwtInterceptor jwtInterceptor;
+    private final CurrentUserArgumentResolver currentUserArgumentResolver;
 
     /**
      * 注册拦截器
@@ -25,6 +30,14 @@ public class WebConfig implements WebMvcConfigurer {
                 .addPathPatterns("/api/**");
     }
 
+    /**
+     * 注册参数解析器：控制器方法可直接声明CurrentUser参数
+     */
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(currentUserArgumentResolver);
+    }
+
     /**
      * 配置跨域
      */
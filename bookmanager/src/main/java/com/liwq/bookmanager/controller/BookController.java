@@ -2,12 +2,21 @@ package com.liwq.bookmanager.controller;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.liwq.bookmanager.annotation.RequireAdmin;
+import com.liwq.bookmanager.cache.CatalogVersion;
 import com.liwq.bookmanager.common.Result;
 import com.liwq.bookmanager.dto.BookDTO;
+import com.liwq.bookmanager.dto.BookDeleteResultDTO;
 import com.liwq.bookmanager.dto.BookDetailDTO;
+import com.liwq.bookmanager.dto.CacheStatisticsDTO;
+import com.liwq.bookmanager.dto.HotStockStatisticsDTO;
+import com.liwq.bookmanager.dto.ImportJobDTO;
+import com.liwq.bookmanager.dto.SuggestionDTO;
+import com.liwq.bookmanager.service.BookImportService;
 import com.liwq.bookmanager.service.BookService;
+import com.liwq.bookmanager.util.HttpCacheUtil;
 import jakarta.validation.Valid;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
@@ -21,8 +30,15 @@ public class BookController {
 
     private final BookService bookService;
 
-    public BookController(BookService bookService) {
+    private final BookImportService bookImportService;
+
+    private final CatalogVersion catalogVersion;
+
+    public BookController(BookService bookService, BookImportService bookImportService,
+                          CatalogVersion catalogVersion) {
         this.bookService = bookService;
+        this.bookImportService = bookImportService;
+        this.catalogVersion = catalogVersion;
     }
 
     /**
@@ -35,6 +51,25 @@ public class BookController {
         return Result.success();
     }
 
+    /**
+     * 批量导入图书（管理员），支持CSV和JSON Lines，在后台执行并返回任务ID
+     */
+    @PostMapping("/import")
+    @RequireAdmin
+    public Result<ImportJobDTO> importBooks(@RequestParam("file") MultipartFile file,
+                                            @RequestParam(required = false) String format) {
+        return Result.success(bookImportService.startImport(file, format));
+    }
+
+    /**
+     * 查询图书导入任务进度（管理员）
+     */
+    @GetMapping("/import/{jobId}")
+    @RequireAdmin
+    public Result<ImportJobDTO> getImportJob(@PathVariable String jobId) {
+        return Result.success(bookImportService.getJob(jobId));
+    }
+
     /**
      * 删除图书（管理员）
      */
@@ -46,13 +81,12 @@ public class BookController {
     }
 
     /**
-     * 批量删除图书（管理员）
+     * 批量删除图书（管理员），返回每本图书的处理结果
      */
     @DeleteMapping("/batch")
     @RequireAdmin
-    public Result<Void> deleteBatchBooks(@RequestBody List<Long> ids) {
-        bookService.deleteBatchBooks(ids);
-        return Result.success();
+    public Result<List<BookDeleteResultDTO>> deleteBatchBooks(@RequestBody List<Long> ids) {
+        return Result.success(bookService.deleteBatchBooks(ids));
     }
 
     /**
@@ -66,16 +100,29 @@ public class BookController {
     }
 
     /**
-     * 获取图书详情
+     * 获取图书详情，内容未变化时返回304
      */
     @GetMapping("/{id}")
-    public Result<BookDetailDTO> getBookById(@PathVariable Long id) {
+    public Result<BookDetailDTO> getBookById(@PathVariable Long id, WebRequest webRequest) {
         BookDetailDTO book = bookService.getBookById(id);
+        if (HttpCacheUtil.checkNotModified(webRequest, book, book.getUpdateTime())) {
+            return null;
+        }
         return Result.success(book);
     }
 
     /**
-     * 分页查询图书列表
+     * 搜索补全建议
+     */
+    @GetMapping("/suggest")
+    public Result<List<SuggestionDTO>> suggest(@RequestParam String q,
+                                               @RequestParam(required = false) String field,
+                                               @RequestParam(defaultValue = "10") int limit) {
+        return Result.success(bookService.suggest(q, field, limit));
+    }
+
+    /**
+     * 分页查询图书列表，目录版本未变化时返回304
      */
     @GetMapping
     public Result<Page<BookDetailDTO>> getBookList(
@@ -85,8 +132,14 @@ public class BookController {
             @RequestParam(required = false) String author,
             @RequestParam(required = false) String publisher,
             @RequestParam(required = false) Long categoryId,
-            @RequestParam(required = false) Integer status) {
-        Page<BookDetailDTO> page = bookService.getBookList(pageNum, pageSize, bookName, author, publisher, categoryId, status);
+            @RequestParam(required = false) Integer status,
+            @RequestParam(defaultValue = "true") boolean searchCount,
+            WebRequest webRequest) {
+        if (HttpCacheUtil.checkNotModified(webRequest, catalogVersion.bookETag())) {
+            return null;
+        }
+        Page<BookDetailDTO> page = bookService.getBookList(pageNum, pageSize, bookName, author, publisher,
+                categoryId, status, searchCount);
         return Result.success(page);
     }
 
@@ -100,6 +153,53 @@ public class BookController {
         return Result.success();
     }
 
+    /**
+     * 开启热门图书库存闸门（管理员）
+     */
+    @PutMapping("/{id}/hot-stock")
+    @RequireAdmin
+    public Result<Void> enableHotStock(@PathVariable Long id) {
+        bookService.enableHotStock(id);
+        return Result.success();
+    }
+
+    /**
+     * 关闭热门图书库存闸门（管理员）
+     */
+    @DeleteMapping("/{id}/hot-stock")
+    @RequireAdmin
+    public Result<Void> disableHotStock(@PathVariable Long id) {
+        bookService.disableHotStock(id);
+        return Result.success();
+    }
+
+    /**
+     * 获取热门图书库存闸门统计（管理员）
+     */
+    @GetMapping("/hot-stock/statistics")
+    @RequireAdmin
+    public Result<List<HotStockStatisticsDTO>> getHotStockStatistics() {
+        return Result.success(bookService.getHotStockStatistics());
+    }
+
+    /**
+     * 获取图书详情缓存统计（管理员）
+     */
+    @GetMapping("/detail-cache/statistics")
+    @RequireAdmin
+    public Result<CacheStatisticsDTO> getDetailCacheStatistics() {
+        return Result.success(bookService.getDetailCacheStatistics());
+    }
+
+    /**
+     * 从数据库重建图书搜索索引（管理员）
+     */
+    @PostMapping("/search-index/rebuild")
+    @RequireAdmin
+    public Result<Integer> rebuildSearchIndex() {
+        return Result.success(bookService.rebuildSearchIndex());
+    }
+
     /**
      * 上传图书封面（管理员）
      */
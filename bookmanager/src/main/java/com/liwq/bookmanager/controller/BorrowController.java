@@ -6,10 +6,20 @@ import com.liwq.bookmanager.common.Result;
 import com.liwq.bookmanager.dto.BorrowDTO;
 import com.liwq.bookmanager.dto.BorrowDetailDTO;
 import com.liwq.bookmanager.dto.BorrowStatisticsDTO;
+import com.liwq.bookmanager.dto.CursorPageDTO;
+import com.liwq.bookmanager.dto.LockContentionDTO;
 import com.liwq.bookmanager.service.BorrowService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
 /**
  * 借阅控制器
  */
@@ -62,6 +72,18 @@ public class BorrowController {
         return Result.success(page);
     }
 
+    /**
+     * 按游标获取我的借阅记录（首页不传cursor，之后传上一页返回的nextCursor）
+     */
+    @GetMapping("/my/cursor")
+    public Result<CursorPageDTO<BorrowDetailDTO>> getMyBorrowRecordsByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int pageSize,
+            @RequestParam(required = false) String status) {
+        CursorPageDTO<BorrowDetailDTO> page = borrowService.getMyBorrowRecordsByCursor(cursor, pageSize, status);
+        return Result.success(page);
+    }
+
     /**
      * 获取所有借阅记录（管理员）
      */
@@ -77,6 +99,50 @@ public class BorrowController {
         return Result.success(page);
     }
 
+    /**
+     * 按游标获取所有借阅记录（管理员）
+     */
+    @GetMapping("/cursor")
+    @RequireAdmin
+    public Result<CursorPageDTO<BorrowDetailDTO>> getAllBorrowRecordsByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int pageSize,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) Long bookId,
+            @RequestParam(required = false) String status) {
+        CursorPageDTO<BorrowDetailDTO> page = borrowService.getAllBorrowRecordsByCursor(cursor, pageSize, userId, bookId, status);
+        return Result.success(page);
+    }
+
+    /**
+     * 导出借阅记录（管理员），以CSV或JSON Lines格式流式输出，支持与列表相同的筛选条件和借阅日期区间
+     */
+    @GetMapping("/export")
+    @RequireAdmin
+    public void exportBorrowRecords(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) Long bookId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+            HttpServletResponse response) throws IOException {
+        // 参数在设置下载响应头之前校验，校验失败时仍按JSON返回错误信息
+        if (!"csv".equals(format) && !"jsonl".equals(format)) {
+            throw new RuntimeException("只支持CSV和JSON Lines格式");
+        }
+        if (startDate != null && endDate != null && startDate.isAfter(endDate)) {
+            throw new RuntimeException("开始日期不能晚于结束日期");
+        }
+
+        String fileName = "borrow-records-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"))
+                + "." + format;
+        response.setContentType("csv".equals(format) ? "text/csv;charset=UTF-8" : "application/x-ndjson;charset=UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+        borrowService.exportBorrowRecords(userId, bookId, status, startDate, endDate, format,
+                response.getOutputStream());
+    }
+
     /**
      * 获取借阅详情
      */
@@ -98,6 +164,18 @@ public class BorrowController {
         return Result.success(page);
     }
 
+    /**
+     * 按游标获取逾期记录（管理员）
+     */
+    @GetMapping("/overdue/cursor")
+    @RequireAdmin
+    public Result<CursorPageDTO<BorrowDetailDTO>> getOverdueRecordsByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int pageSize) {
+        CursorPageDTO<BorrowDetailDTO> page = borrowService.getOverdueRecordsByCursor(cursor, pageSize);
+        return Result.success(page);
+    }
+
     /**
      * 获取借阅统计数据（管理员）
      */
@@ -107,4 +185,13 @@ public class BorrowController {
         BorrowStatisticsDTO statistics = borrowService.getBorrowStatistics();
         return Result.success(statistics);
     }
+
+    /**
+     * 获取乐观锁冲突统计（管理员）
+     */
+    @GetMapping("/lock-contention/statistics")
+    @RequireAdmin
+    public Result<List<LockContentionDTO>> getLockContentionStatistics() {
+        return Result.success(borrowService.getLockContentionStatistics());
+    }
 }
@@ -2,12 +2,15 @@ package com.liwq.bookmanager.controller;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.liwq.bookmanager.annotation.RequireAdmin;
+import com.liwq.bookmanager.cache.CatalogVersion;
 import com.liwq.bookmanager.common.Result;
 import com.liwq.bookmanager.dto.CategoryDTO;
 import com.liwq.bookmanager.model.BookCategory;
 import com.liwq.bookmanager.service.BookCategoryService;
+import com.liwq.bookmanager.util.HttpCacheUtil;
 import jakarta.validation.Valid;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -20,8 +23,11 @@ public class CategoryController {
 
     private final BookCategoryService bookCategoryService;
 
-    public CategoryController(BookCategoryService bookCategoryService) {
+    private final CatalogVersion catalogVersion;
+
+    public CategoryController(BookCategoryService bookCategoryService, CatalogVersion catalogVersion) {
         this.bookCategoryService = bookCategoryService;
+        this.catalogVersion = catalogVersion;
     }
 
     /**
@@ -55,31 +61,41 @@ public class CategoryController {
     }
 
     /**
-     * 获取分类详情
+     * 获取分类详情，内容未变化时返回304
      */
     @GetMapping("/{id}")
-    public Result<BookCategory> getCategoryById(@PathVariable Long id) {
+    public Result<BookCategory> getCategoryById(@PathVariable Long id, WebRequest webRequest) {
         BookCategory category = bookCategoryService.getCategoryById(id);
+        if (HttpCacheUtil.checkNotModified(webRequest, category, category.getUpdateTime())) {
+            return null;
+        }
         return Result.success(category);
     }
 
     /**
-     * 分页查询分类列表
+     * 分页查询分类列表，分类版本未变化时返回304
      */
     @GetMapping
     public Result<Page<BookCategory>> getCategoryList(
             @RequestParam(defaultValue = "1") int pageNum,
             @RequestParam(defaultValue = "10") int pageSize,
-            @RequestParam(required = false) String categoryName) {
+            @RequestParam(required = false) String categoryName,
+            WebRequest webRequest) {
+        if (HttpCacheUtil.checkNotModified(webRequest, catalogVersion.categoryETag())) {
+            return null;
+        }
         Page<BookCategory> page = bookCategoryService.getCategoryList(pageNum, pageSize, categoryName);
         return Result.success(page);
     }
 
     /**
-     * 获取所有分类（不分页，用于下拉选择）
+     * 获取所有分类（不分页，用于下拉选择），分类版本未变化时返回304
      */
     @GetMapping("/all")
-    public Result<List<BookCategory>> getAllCategories() {
+    public Result<List<BookCategory>> getAllCategories(WebRequest webRequest) {
+        if (HttpCacheUtil.checkNotModified(webRequest, catalogVersion.categoryETag())) {
+            return null;
+        }
         List<BookCategory> categories = bookCategoryService.getAllCategories();
         return Result.success(categories);
     }
@@ -2,13 +2,18 @@ package com.liwq.bookmanager.controller;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.liwq.bookmanager.annotation.RequireAdmin;
+import com.liwq.bookmanager.common.CurrentUser;
 import com.liwq.bookmanager.common.Result;
+import com.liwq.bookmanager.dto.CursorPageDTO;
 import com.liwq.bookmanager.dto.ReservationDTO;
 import com.liwq.bookmanager.dto.ReservationDetailDTO;
+import com.liwq.bookmanager.dto.ReservationStatisticsDTO;
+import com.liwq.bookmanager.notification.ReservationNotifier;
 import com.liwq.bookmanager.service.ReservationService;
-import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 /**
  * 预约控制器
@@ -19,16 +24,19 @@ public class ReservationController {
 
     private final ReservationService reservationService;
 
-    public ReservationController(ReservationService reservationService) {
+    private final ReservationNotifier reservationNotifier;
+
+    public ReservationController(ReservationService reservationService, ReservationNotifier reservationNotifier) {
         this.reservationService = reservationService;
+        this.reservationNotifier = reservationNotifier;
     }
 
     /**
      * 预约图书
      */
     @PostMapping
-    public Result<Void> reserveBook(@Valid @RequestBody ReservationDTO reservationDTO, HttpServletRequest request) {
-        Long userId = (Long) request.getAttribute("userId");
+    public Result<Void> reserveBook(@Valid @RequestBody ReservationDTO reservationDTO, CurrentUser currentUser) {
+        Long userId = currentUser.getUserId();
         reservationService.reserveBook(userId, reservationDTO);
         return Result.success();
     }
@@ -37,8 +45,8 @@ public class ReservationController {
      * 取消预约
      */
     @PutMapping("/{id}/cancel")
-    public Result<Void> cancelReservation(@PathVariable Long id, HttpServletRequest request) {
-        Long userId = (Long) request.getAttribute("userId");
+    public Result<Void> cancelReservation(@PathVariable Long id, CurrentUser currentUser) {
+        Long userId = currentUser.getUserId();
         reservationService.cancelReservation(userId, id);
         return Result.success();
     }
@@ -51,9 +59,24 @@ public class ReservationController {
             @RequestParam(defaultValue = "1") int pageNum,
             @RequestParam(defaultValue = "10") int pageSize,
             @RequestParam(required = false) String status,
-            HttpServletRequest request) {
-        Long userId = (Long) request.getAttribute("userId");
-        Page<ReservationDetailDTO> page = reservationService.getMyReservations(userId, pageNum, pageSize, status);
+            @RequestParam(defaultValue = "true") boolean searchCount,
+            CurrentUser currentUser) {
+        Long userId = currentUser.getUserId();
+        Page<ReservationDetailDTO> page = reservationService.getMyReservations(userId, pageNum, pageSize, status, searchCount);
+        return Result.success(page);
+    }
+
+    /**
+     * 按游标获取我的预约记录（首页不传cursor，之后传上一页返回的nextCursor）
+     */
+    @GetMapping("/my/cursor")
+    public Result<CursorPageDTO<ReservationDetailDTO>> getMyReservationsByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int pageSize,
+            @RequestParam(required = false) String status,
+            CurrentUser currentUser) {
+        Long userId = currentUser.getUserId();
+        CursorPageDTO<ReservationDetailDTO> page = reservationService.getMyReservationsByCursor(userId, cursor, pageSize, status);
         return Result.success(page);
     }
 
@@ -72,6 +95,40 @@ public class ReservationController {
         return Result.success(page);
     }
 
+    /**
+     * 按游标获取所有预约记录（管理员）
+     */
+    @GetMapping("/cursor")
+    @RequireAdmin
+    public Result<CursorPageDTO<ReservationDetailDTO>> getAllReservationsByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int pageSize,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) Long bookId,
+            @RequestParam(required = false) String status) {
+        CursorPageDTO<ReservationDetailDTO> page = reservationService.getAllReservationsByCursor(cursor, pageSize, userId, bookId, status);
+        return Result.success(page);
+    }
+
+    /**
+     * 获取预约统计（管理员）
+     */
+    @GetMapping("/statistics")
+    @RequireAdmin
+    public Result<ReservationStatisticsDTO> getReservationStatistics(@RequestParam(defaultValue = "30") int days) {
+        ReservationStatisticsDTO statistics = reservationService.getReservationStatistics(days);
+        return Result.success(statistics);
+    }
+
+    /**
+     * 订阅我的预约通知（SSE），预约状态变化时推送最新的预约记录
+     * EventSource无法设置请求头，可通过token参数传递登录令牌
+     */
+    @GetMapping(value = "/notifications/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeNotifications(CurrentUser currentUser) {
+        return reservationNotifier.subscribe(currentUser.getUserId());
+    }
+
     /**
      * 获取预约详情
      */
@@ -3,10 +3,10 @@ package com.liwq.bookmanager.controller;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.liwq.bookmanager.annotation.NoAuth;
 import com.liwq.bookmanager.annotation.RequireAdmin;
+import com.liwq.bookmanager.common.CurrentUser;
 import com.liwq.bookmanager.common.Result;
 import com.liwq.bookmanager.dto.*;
 import com.liwq.bookmanager.service.UserService;
-import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
@@ -62,9 +62,9 @@ public class UserController {
      * 获取个人信息
      */
     @GetMapping("/profile")
-    public Result<UserDTO> getProfile(HttpServletRequest request) {
+    public Result<UserDTO> getProfile(CurrentUser currentUser) {
         try {
-            Long userId = (Long) request.getAttribute("userId");
+            Long userId = currentUser.getUserId();
             UserDTO userDTO = userService.getUserInfo(userId);
             return Result.success(userDTO);
         } catch (Exception e) {
@@ -77,9 +77,9 @@ public class UserController {
      */
     @PutMapping("/profile")
     public Result<Void> updateProfile(@Valid @RequestBody UpdateUserDTO updateUserDTO,
-                                      HttpServletRequest request) {
+                                      CurrentUser currentUser) {
         try {
-            Long userId = (Long) request.getAttribute("userId");
+            Long userId = currentUser.getUserId();
             userService.updateUserInfo(userId, updateUserDTO);
             return Result.success();
         } catch (Exception e) {
@@ -92,9 +92,9 @@ public class UserController {
      */
     @PutMapping("/password")
     public Result<Void> updatePassword(@Valid @RequestBody PasswordDTO passwordDTO,
-                                       HttpServletRequest request) {
+                                       CurrentUser currentUser) {
         try {
-            Long userId = (Long) request.getAttribute("userId");
+            Long userId = currentUser.getUserId();
             userService.updatePassword(userId, passwordDTO);
             return Result.success();
         } catch (Exception e) {
@@ -0,0 +1,14 @@
+package com.liwq.bookmanager.dto;
+
+import lombok.Data;
+
+/**
+ * 图书借阅次数DTO
+ */
+@Data
+public class BookBorrowCountDTO {
+
+    private Long bookId;
+
+    private Long borrowCount;
+}
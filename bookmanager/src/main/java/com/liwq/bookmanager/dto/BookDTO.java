@@ -44,4 +44,9 @@ public class BookDTO {
     private String description;
 
     private Integer status;
+
+    /**
+     * 编辑时读取到的版本号，为空时只校验服务端读取时的版本
+     */
+    private Integer version;
 }
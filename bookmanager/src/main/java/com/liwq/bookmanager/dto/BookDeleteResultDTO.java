@@ -0,0 +1,23 @@
+package com.liwq.bookmanager.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量删除图书结果DTO
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookDeleteResultDTO {
+
+    private Long id;
+
+    private Boolean success;
+
+    /**
+     * 失败原因，成功时为空
+     */
+    private String message;
+}
@@ -40,6 +40,8 @@ public class BookDetailDTO {
 
     private Integer status;
 
+    private Integer version;
+
     private LocalDateTime createTime;
 
     private LocalDateTime updateTime;
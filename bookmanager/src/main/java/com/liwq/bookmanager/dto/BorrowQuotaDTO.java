@@ -0,0 +1,42 @@
+package com.liwq.bookmanager.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 借阅前置校验数据DTO（用户状态及借阅计数）
+ */
+@Data
+public class BorrowQuotaDTO {
+
+    /**
+     * 用户状态：0禁用，1启用
+     */
+    private Integer userStatus;
+
+    /**
+     * 逾期未还数量
+     */
+    private Long overdueCount;
+
+    /**
+     * 借阅中数量
+     */
+    private Long borrowingCount;
+
+    /**
+     * 借阅中的同一本图书数量
+     */
+    private Long sameBookCount;
+
+    /**
+     * 借阅中的图书ID，逗号分隔，没有时为null
+     */
+    private String borrowingBookIds;
+
+    /**
+     * 未到期借阅中记录最早的应还日期，到期后逾期数会变化
+     */
+    private LocalDateTime nextDueDate;
+}
@@ -0,0 +1,34 @@
+package com.liwq.bookmanager.dto;
+
+import lombok.Data;
+
+/**
+ * 缓存统计DTO
+ */
+@Data
+public class CacheStatisticsDTO {
+
+    /**
+     * 当前条目数
+     */
+    private Integer size;
+
+    /**
+     * 最大条目数
+     */
+    private Integer maxSize;
+
+    private Long hits;
+
+    private Long misses;
+
+    /**
+     * 因容量或过期被淘汰的条目数
+     */
+    private Long evictions;
+
+    /**
+     * 命中率（0~1）
+     */
+    private Double hitRate;
+}
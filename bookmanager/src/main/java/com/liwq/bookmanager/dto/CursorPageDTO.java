@@ -0,0 +1,47 @@
+package com.liwq.bookmanager.dto;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 游标分页结果DTO（按创建时间倒序的键集分页）
+ */
+@Data
+public class CursorPageDTO<T> {
+
+    /**
+     * 当前页数据
+     */
+    private List<T> records;
+
+    /**
+     * 下一页游标，没有更多数据时为null
+     */
+    private String nextCursor;
+
+    /**
+     * 是否还有更多数据
+     */
+    private Boolean hasMore;
+
+    /**
+     * 根据多查询一条的结果构建分页：rows最多包含pageSize + 1条，多出的一条仅用于判断是否还有下一页
+     * pageSize须由调用方限制为不小于1
+     */
+    public static <T> CursorPageDTO<T> of(List<T> rows, int pageSize, Function<T, String> cursorOf) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("每页条数必须大于0");
+        }
+        CursorPageDTO<T> page = new CursorPageDTO<>();
+        boolean hasMore = rows.size() > pageSize;
+        List<T> records = hasMore ? rows.subList(0, pageSize) : rows;
+        page.setRecords(records);
+        page.setHasMore(hasMore);
+        if (hasMore) {
+            page.setNextCursor(cursorOf.apply(records.get(records.size() - 1)));
+        }
+        return page;
+    }
+}
@@ -0,0 +1,20 @@
+package com.liwq.bookmanager.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * 按日期分组计数DTO
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyCountDTO {
+
+    private LocalDate date;
+
+    private Long count;
+}
@@ -0,0 +1,37 @@
+package com.liwq.bookmanager.dto;
+
+import lombok.Data;
+
+/**
+ * 热门图书库存闸门统计DTO
+ */
+@Data
+public class HotStockStatisticsDTO {
+
+    private Long bookId;
+
+    /**
+     * 闸门内剩余可借数量
+     */
+    private Integer available;
+
+    /**
+     * 已放行但事务尚未结束的借阅数
+     */
+    private Integer inflight;
+
+    /**
+     * 放行次数
+     */
+    private Long acquired;
+
+    /**
+     * 因无库存被直接拒绝的次数，即节省的数据库事务数
+     */
+    private Long rejected;
+
+    /**
+     * 放行后事务回滚、归还名额的次数
+     */
+    private Long rolledBack;
+}
@@ -0,0 +1,21 @@
+package com.liwq.bookmanager.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 导入失败行DTO
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportErrorDTO {
+
+    /**
+     * 数据行号，从1开始，不含CSV表头
+     */
+    private Long row;
+
+    private String message;
+}
@@ -0,0 +1,45 @@
+package com.liwq.bookmanager.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 图书导入任务DTO
+ */
+@Data
+public class ImportJobDTO {
+
+    private String jobId;
+
+    private String fileName;
+
+    /**
+     * 状态：running执行中，completed已完成，failed失败
+     */
+    private String status;
+
+    /**
+     * 已读取的数据行数
+     */
+    private Long totalRows;
+
+    private Long successCount;
+
+    private Long failedCount;
+
+    /**
+     * 失败行明细，超过上限的不再记录
+     */
+    private List<ImportErrorDTO> errors;
+
+    /**
+     * 任务失败原因
+     */
+    private String message;
+
+    private LocalDateTime startTime;
+
+    private LocalDateTime endTime;
+}
@@ -0,0 +1,35 @@
+package com.liwq.bookmanager.dto;
+
+import lombok.Data;
+
+/**
+ * 乐观锁冲突统计DTO
+ */
+@Data
+public class LockContentionDTO {
+
+    /**
+     * 操作名称
+     */
+    private String operation;
+
+    /**
+     * 执行次数（不含重试）
+     */
+    private Long executions;
+
+    /**
+     * 版本冲突次数
+     */
+    private Long conflicts;
+
+    /**
+     * 重试耗尽后仍失败的次数
+     */
+    private Long failures;
+
+    /**
+     * 冲突率：冲突次数 / 执行次数
+     */
+    private Double conflictRate;
+}
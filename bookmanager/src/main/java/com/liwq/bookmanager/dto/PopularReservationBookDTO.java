@@ -0,0 +1,20 @@
+package com.liwq.bookmanager.dto;
+
+import lombok.Data;
+
+/**
+ * 热门预约图书DTO
+ */
+@Data
+public class PopularReservationBookDTO {
+
+    private Long bookId;
+
+    private String bookName;
+
+    private String author;
+
+    private String coverImage;
+
+    private Long reservationCount;
+}
@@ -56,7 +56,7 @@ public class ReservationDetailDTO {
     private LocalDateTime reservationDate;
 
     /**
-     * 状态：pending待审核，approved已通过，cancelled已取消，completed已完成
+     * 状态：pending待审核，approved已通过（排队中），cancelled已取消，completed已到书通知，expired已过期
      */
     private String status;
 
@@ -65,6 +65,11 @@ public class ReservationDetailDTO {
      */
     private String remark;
 
+    /**
+     * 到书通知后的保留截止时间，借阅后清空
+     */
+    private LocalDateTime holdExpireTime;
+
     /**
      * 创建时间
      */
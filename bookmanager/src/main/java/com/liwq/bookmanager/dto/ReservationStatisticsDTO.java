@@ -0,0 +1,34 @@
+package com.liwq.bookmanager.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 预约统计DTO
+ */
+@Data
+public class ReservationStatisticsDTO {
+
+    private Long totalReservations;
+
+    private Long pendingCount;
+
+    private Long approvedCount;
+
+    private Long cancelledCount;
+
+    private Long completedCount;
+
+    private Long expiredCount;
+
+    /**
+     * 每日预约数量趋势（按日期升序，无预约的日期数量为0）
+     */
+    private List<DailyCountDTO> trend;
+
+    /**
+     * 热门预约图书排行
+     */
+    private List<PopularReservationBookDTO> popularBooks;
+}
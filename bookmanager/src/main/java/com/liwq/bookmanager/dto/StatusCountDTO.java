@@ -0,0 +1,14 @@
+package com.liwq.bookmanager.dto;
+
+import lombok.Data;
+
+/**
+ * 按状态分组计数DTO
+ */
+@Data
+public class StatusCountDTO {
+
+    private String status;
+
+    private Long count;
+}
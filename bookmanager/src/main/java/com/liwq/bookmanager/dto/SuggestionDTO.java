@@ -0,0 +1,29 @@
+package com.liwq.bookmanager.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 搜索补全建议DTO
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionDTO {
+
+    /**
+     * 补全文本
+     */
+    private String text;
+
+    /**
+     * 所属字段：bookName书名，author作者，publisher出版社
+     */
+    private String field;
+
+    /**
+     * 热度（包含该文本的图书被借阅的总次数）
+     */
+    private Long score;
+}
@@ -0,0 +1,18 @@
+package com.liwq.bookmanager.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 表数据版本DTO：最近更新时间、行数及查询时的数据库时间
+ */
+@Data
+public class TableVersionDTO {
+
+    private LocalDateTime lastUpdate;
+
+    private Long total;
+
+    private LocalDateTime now;
+}
@@ -0,0 +1,11 @@
+package com.liwq.bookmanager.exception;
+
+/**
+ * 乐观锁冲突异常：记录在读取之后已被其他操作修改
+ */
+public class ConcurrentUpdateException extends RuntimeException {
+
+    public ConcurrentUpdateException() {
+        super("数据已被其他操作修改，请刷新后重试");
+    }
+}
@@ -3,22 +3,26 @@ package com.liwq.bookmanager.interceptor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.liwq.bookmanager.annotation.NoAuth;
 import com.liwq.bookmanager.annotation.RequireAdmin;
+import com.liwq.bookmanager.common.CurrentUser;
+import com.liwq.bookmanager.common.CurrentUserHolder;
 import com.liwq.bookmanager.common.Result;
 import com.liwq.bookmanager.util.JwtUtil;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 import org.springframework.web.method.HandlerMethod;
-import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
 
 /**
  * JWT拦截器
  */
 @Component
 @RequiredArgsConstructor
-public class JwtInterceptor implements HandlerInterceptor {
+public class JwtInterceptor implements AsyncHandlerInterceptor {
 
     private final JwtUtil jwtUtil;
     private final ObjectMapper objectMapper;
@@ -30,6 +34,11 @@ public class JwtInterceptor implements HandlerInterceptor {
             return true;
         }
 
+        // 异步请求结束时的再次分发（如SSE连接关闭），首次请求已校验过，令牌此时可能已过期
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+
         HandlerMethod handlerMethod = (HandlerMethod) handler;
 
         // 检查是否有NoAuth注解
@@ -49,37 +58,54 @@ public class JwtInterceptor implements HandlerInterceptor {
             token = token.substring(7);
         }
 
-        // 验证token
-        if (!StringUtils.hasText(token) || !jwtUtil.validateToken(token)) {
+        // 浏览器EventSource无法设置请求头，SSE订阅请求允许通过token参数传递
+        if (!StringUtils.hasText(token) && isEventStreamRequest(request)) {
+            token = request.getParameter("token");
+        }
+
+        // 验证token，只解析一次
+        CurrentUser currentUser = StringUtils.hasText(token) ? jwtUtil.parseToken(token) : null;
+        if (currentUser == null) {
             response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             response.setContentType("application/json;charset=UTF-8");
             response.getWriter().write(objectMapper.writeValueAsString(Result.error(401, "未登录或登录已过期")));
             return false;
         }
 
-        // 从token中获取用户信息
-        Long userId = jwtUtil.getUserIdFromToken(token);
-        String username = jwtUtil.getUsernameFromToken(token);
-        String role = jwtUtil.getRoleFromToken(token);
-
-        // 将用户信息存入request
-        request.setAttribute("userId", userId);
-        request.setAttribute("username", username);
-        request.setAttribute("role", role);
-
         // 检查是否需要管理员权限
         RequireAdmin requireAdmin = handlerMethod.getMethodAnnotation(RequireAdmin.class);
         if (requireAdmin == null) {
             requireAdmin = handlerMethod.getBeanType().getAnnotation(RequireAdmin.class);
         }
 
-        if (requireAdmin != null && !"admin".equals(role)) {
+        if (requireAdmin != null && !currentUser.isAdmin()) {
             response.setStatus(HttpServletResponse.SC_FORBIDDEN);
             response.setContentType("application/json;charset=UTF-8");
             response.getWriter().write(objectMapper.writeValueAsString(Result.error(403, "需要管理员权限")));
             return false;
         }
 
+        // 校验全部通过后再将用户信息存入当前线程：preHandle返回false时不会调用afterCompletion，
+        // 提前存入会残留在线程池的线程中。请求结束时清除；控制器通过CurrentUser参数获取
+        CurrentUserHolder.set(currentUser);
         return true;
     }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        CurrentUserHolder.clear();
+    }
+
+    /**
+     * 异步请求（如SSE）开始后请求线程立即归还，不会调用afterCompletion，在这里清除
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        CurrentUserHolder.clear();
+    }
+
+    private boolean isEventStreamRequest(HttpServletRequest request) {
+        String accept = request.getHeader("Accept");
+        return accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE);
+    }
 }
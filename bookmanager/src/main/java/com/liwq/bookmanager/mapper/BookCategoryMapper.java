@@ -1,12 +1,20 @@
 package com.liwq.bookmanager.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.liwq.bookmanager.dto.TableVersionDTO;
 import com.liwq.bookmanager.model.BookCategory;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
 
 /**
  * 图书分类Mapper
  */
 @Mapper
 public interface BookCategoryMapper extends BaseMapper<BookCategory> {
+
+    /**
+     * 分类表数据版本：最近更新时间和行数（分类会被物理删除，行数变化也视为修改）
+     */
+    @Select("SELECT MAX(update_time) AS last_update, COUNT(*) AS total, NOW() AS now FROM book_categories")
+    TableVersionDTO selectTableVersion();
 }
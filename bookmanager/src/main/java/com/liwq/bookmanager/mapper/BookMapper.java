@@ -1,12 +1,94 @@
 package com.liwq.bookmanager.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.liwq.bookmanager.dto.TableVersionDTO;
 import com.liwq.bookmanager.model.Book;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
 
 /**
  * 图书Mapper
  */
 @Mapper
 public interface BookMapper extends BaseMapper<Book> {
+
+    /**
+     * 原子减少可借数量，图书已下架或库存不足时不更新
+     *
+     * @return 受影响行数，0表示图书不存在、已下架或已无可借数量
+     */
+    @Update("UPDATE books SET available_count = available_count - 1, version = version + 1 " +
+            "WHERE id = #{id} AND status = 1 AND available_count > 0")
+    int decreaseAvailableCount(@Param("id") Long id);
+
+    /**
+     * 原子增加可借数量，已达到馆藏总数时不更新
+     *
+     * @return 受影响行数，0表示图书不存在或可借数量已达到馆藏总数
+     */
+    @Update("UPDATE books SET available_count = available_count + 1, version = version + 1 " +
+            "WHERE id = #{id} AND available_count < total_count")
+    int increaseAvailableCount(@Param("id") Long id);
+
+    /**
+     * 按主键读取图书详情中随借还变化的列，详情缓存只保存其余字段
+     */
+    @Select("SELECT id, available_count, status, version, update_time FROM books WHERE id = #{id}")
+    Book selectStockById(@Param("id") Long id);
+
+    /**
+     * 图书表数据版本：最近更新时间（走idx_books_update_time索引）和行数
+     * update_time随每次修改自动更新，借还扣减库存也会改变它
+     */
+    @Select("SELECT MAX(update_time) AS last_update, COUNT(*) AS total, NOW() AS now FROM books")
+    TableVersionDTO selectTableVersion();
+
+    /**
+     * 查询所有已使用的ISBN，批量导入前预加载用于查重
+     */
+    @Select("SELECT isbn FROM books WHERE isbn IS NOT NULL AND isbn <> ''")
+    List<String> selectAllIsbns();
+
+    /**
+     * 批量导入插入图书
+     * 固定列的插入语句，批量执行时同一语句可以被驱动合并为多值INSERT（需开启rewriteBatchedStatements）
+     */
+    @Insert("INSERT INTO books (book_name, author, publisher, isbn, category_id, total_count, available_count, " +
+            "price, publish_date, cover_image, description, status) VALUES (#{bookName}, #{author}, #{publisher}, " +
+            "#{isbn}, #{categoryId}, #{totalCount}, #{availableCount}, #{price}, #{publishDate}, #{coverImage}, " +
+            "#{description}, #{status})")
+    @Options(useGeneratedKeys = true, keyProperty = "id")
+    int insertForImport(Book book);
+
+    /**
+     * 修改图书状态，只写入status列（用于上下架和批量下架）
+     *
+     * @return 更新条数
+     */
+    @Update("<script>" +
+            "UPDATE books SET status = #{status}, version = version + 1 WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int updateStatusByIds(@Param("ids") List<Long> ids, @Param("status") Integer status);
+
+    /**
+     * 批量下架没有未归还借阅记录的图书，校验写在同一条语句中。
+     * 与并发借阅的互斥来自books行锁而不是子查询：借阅扣减库存的UPDATE要求status = 1并锁住同一行，
+     * 下架先提交时借阅扣减不到库存；借阅先提交时本语句等待行锁后按最新提交的借阅记录重新判断，跳过该图书
+     *
+     * @return 更新条数
+     */
+    @Update("<script>" +
+            "UPDATE books SET status = 0, version = version + 1 WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            " AND NOT EXISTS (SELECT 1 FROM borrow_records br " +
+            "WHERE br.book_id = books.id AND br.status IN ('borrowing', 'overdue'))" +
+            "</script>")
+    int delistIfNoUnreturned(@Param("ids") List<Long> ids);
 }
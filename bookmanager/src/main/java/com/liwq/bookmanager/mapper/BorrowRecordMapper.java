@@ -1,12 +1,20 @@
 package com.liwq.bookmanager.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.liwq.bookmanager.dto.BookBorrowCountDTO;
 import com.liwq.bookmanager.dto.BorrowDetailDTO;
+import com.liwq.bookmanager.dto.BorrowQuotaDTO;
+import com.liwq.bookmanager.dto.BorrowStatisticsDTO;
 import com.liwq.bookmanager.model.BorrowRecord;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -15,11 +23,41 @@ import java.util.List;
 @Mapper
 public interface BorrowRecordMapper extends BaseMapper<BorrowRecord> {
 
+    /**
+     * 借阅详情查询列（用于<script>语句）
+     * 状态和逾期天数在读取时按应还日期计算，不依赖定时任务是否已把记录更新为逾期
+     */
+    String DETAIL_COLUMNS = "br.id, br.user_id, br.book_id, br.borrow_date, br.due_date, br.return_date, br.renew_count, " +
+            "CASE WHEN br.status = 'borrowing' AND br.due_date &lt; NOW() THEN 'overdue' ELSE br.status END AS status, " +
+            "CASE WHEN br.status &lt;&gt; 'returned' AND br.due_date &lt; NOW() " +
+            "THEN TIMESTAMPDIFF(DAY, br.due_date, NOW()) ELSE br.overdue_days END AS overdue_days, " +
+            "br.create_time, br.update_time, ";
+
+    /**
+     * 按读取时计算的状态筛选：已到期的借阅中记录视为逾期
+     */
+    String STATUS_CONDITION = "<choose>" +
+            "<when test='status == \"overdue\"'>" +
+            " AND (br.status = 'overdue' OR (br.status = 'borrowing' AND br.due_date &lt; NOW())) " +
+            "</when>" +
+            "<when test='status == \"borrowing\"'> AND br.status = 'borrowing' AND br.due_date &gt;= NOW() </when>" +
+            "<when test='status != null and status != \"\"'> AND br.status = #{status} </when>" +
+            "</choose>";
+
+    /**
+     * 逾期游标查询中每个UNION分支的用户、图书和游标条件
+     */
+    String OVERDUE_CURSOR_CONDITION = "<if test='userId != null'> AND br.user_id = #{userId} </if>" +
+            "<if test='bookId != null'> AND br.book_id = #{bookId} </if>" +
+            "<if test='cursorTime != null'>" +
+            " AND (br.create_time &lt; #{cursorTime} OR (br.create_time = #{cursorTime} AND br.id &lt; #{cursorId})) " +
+            "</if>";
+
     /**
      * 查询借阅详情列表
      */
     @Select("<script>" +
-            "SELECT br.*, " +
+            "SELECT " + DETAIL_COLUMNS +
             "u.username, u.real_name, " +
             "b.book_name, b.author, " +
             "bc.category_name " +
@@ -30,7 +68,7 @@ public interface BorrowRecordMapper extends BaseMapper<BorrowRecord> {
             "WHERE 1=1 " +
             "<if test='userId != null'> AND br.user_id = #{userId} </if>" +
             "<if test='bookId != null'> AND br.book_id = #{bookId} </if>" +
-            "<if test='status != null and status != \"\"'> AND br.status = #{status} </if>" +
+            STATUS_CONDITION +
             "ORDER BY br.create_time DESC " +
             "LIMIT #{offset}, #{limit}" +
             "</script>")
@@ -40,6 +78,98 @@ public interface BorrowRecordMapper extends BaseMapper<BorrowRecord> {
                                                    @Param("offset") Integer offset,
                                                    @Param("limit") Integer limit);
 
+    /**
+     * 按游标查询借阅详情列表（键集分页，避免深分页扫描并丢弃offset行）
+     * 排序与游标条件均基于(create_time, id)，对应索引idx_borrow_create_time等
+     */
+    @Select("<script>" +
+            "SELECT " + DETAIL_COLUMNS +
+            "u.username, u.real_name, " +
+            "b.book_name, b.author, " +
+            "bc.category_name " +
+            "FROM borrow_records br " +
+            "LEFT JOIN users u ON br.user_id = u.id " +
+            "LEFT JOIN books b ON br.book_id = b.id " +
+            "LEFT JOIN book_categories bc ON b.category_id = bc.id " +
+            "WHERE 1=1 " +
+            "<if test='userId != null'> AND br.user_id = #{userId} </if>" +
+            "<if test='bookId != null'> AND br.book_id = #{bookId} </if>" +
+            STATUS_CONDITION +
+            "<if test='cursorTime != null'>" +
+            " AND (br.create_time &lt; #{cursorTime} OR (br.create_time = #{cursorTime} AND br.id &lt; #{cursorId})) " +
+            "</if>" +
+            "ORDER BY br.create_time DESC, br.id DESC " +
+            "LIMIT #{limit}" +
+            "</script>")
+    List<BorrowDetailDTO> selectBorrowDetailListByCursor(@Param("userId") Long userId,
+                                                         @Param("bookId") Long bookId,
+                                                         @Param("status") String status,
+                                                         @Param("cursorTime") LocalDateTime cursorTime,
+                                                         @Param("cursorId") Long cursorId,
+                                                         @Param("limit") Integer limit);
+
+    /**
+     * 按游标查询逾期的借阅详情（status为overdue时代替selectBorrowDetailListByCursor）
+     * 逾期包括已标记为overdue和已到期仍为borrowing两部分，拆成UNION ALL各自走索引，不用OR使索引失效：
+     * 前者走idx_borrow_status_create_time按游标顺序读取，后者只是定时任务尚未标记的少量记录，走idx_borrow_status_due_date；
+     * 两部分各取limit条后合并排序，再关联用户、图书和分类
+     */
+    @Select("<script>" +
+            "SELECT " + DETAIL_COLUMNS +
+            "u.username, u.real_name, " +
+            "b.book_name, b.author, " +
+            "bc.category_name " +
+            "FROM (" +
+            "(SELECT br.id FROM borrow_records br WHERE br.status = 'overdue' " + OVERDUE_CURSOR_CONDITION +
+            "ORDER BY br.create_time DESC, br.id DESC LIMIT #{limit}) " +
+            "UNION ALL " +
+            "(SELECT br.id FROM borrow_records br WHERE br.status = 'borrowing' AND br.due_date &lt; NOW() " +
+            OVERDUE_CURSOR_CONDITION +
+            "ORDER BY br.create_time DESC, br.id DESC LIMIT #{limit})" +
+            ") page " +
+            "JOIN borrow_records br ON br.id = page.id " +
+            "LEFT JOIN users u ON br.user_id = u.id " +
+            "LEFT JOIN books b ON br.book_id = b.id " +
+            "LEFT JOIN book_categories bc ON b.category_id = bc.id " +
+            "ORDER BY br.create_time DESC, br.id DESC " +
+            "LIMIT #{limit}" +
+            "</script>")
+    List<BorrowDetailDTO> selectOverdueDetailListByCursor(@Param("userId") Long userId,
+                                                          @Param("bookId") Long bookId,
+                                                          @Param("cursorTime") LocalDateTime cursorTime,
+                                                          @Param("cursorId") Long cursorId,
+                                                          @Param("limit") Integer limit);
+
+    /**
+     * 流式导出借阅详情，逐行交给handler处理，不在内存中累积结果
+     * fetchSize为Integer.MIN_VALUE时MySQL驱动逐行读取结果集；按(create_time, id)升序走idx_borrow_create_time索引，
+     * 时间区间为[startTime, endTime)，不需要额外排序即可开始返回数据
+     */
+    @Select("<script>" +
+            "SELECT " + DETAIL_COLUMNS +
+            "u.username, u.real_name, " +
+            "b.book_name, b.author, " +
+            "bc.category_name " +
+            "FROM borrow_records br " +
+            "LEFT JOIN users u ON br.user_id = u.id " +
+            "LEFT JOIN books b ON br.book_id = b.id " +
+            "LEFT JOIN book_categories bc ON b.category_id = bc.id " +
+            "WHERE 1=1 " +
+            "<if test='userId != null'> AND br.user_id = #{userId} </if>" +
+            "<if test='bookId != null'> AND br.book_id = #{bookId} </if>" +
+            STATUS_CONDITION +
+            "<if test='startTime != null'> AND br.create_time &gt;= #{startTime} </if>" +
+            "<if test='endTime != null'> AND br.create_time &lt; #{endTime} </if>" +
+            "ORDER BY br.create_time, br.id" +
+            "</script>")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    void exportBorrowDetails(@Param("userId") Long userId,
+                             @Param("bookId") Long bookId,
+                             @Param("status") String status,
+                             @Param("startTime") LocalDateTime startTime,
+                             @Param("endTime") LocalDateTime endTime,
+                             ResultHandler<BorrowDetailDTO> handler);
+
     /**
      * 查询借阅详情总数
      */
@@ -49,16 +179,118 @@ public interface BorrowRecordMapper extends BaseMapper<BorrowRecord> {
             "WHERE 1=1 " +
             "<if test='userId != null'> AND br.user_id = #{userId} </if>" +
             "<if test='bookId != null'> AND br.book_id = #{bookId} </if>" +
-            "<if test='status != null and status != \"\"'> AND br.status = #{status} </if>" +
+            STATUS_CONDITION +
             "</script>")
     Long countBorrowDetails(@Param("userId") Long userId,
                             @Param("bookId") Long bookId,
                             @Param("status") String status);
 
+    /**
+     * 一次查询借阅前置校验所需数据：用户状态、逾期数、借阅中数量、是否已借该书、借阅中的图书ID及最近的应还日期
+     * 逾期与借阅中按应还日期判断，与借阅详情列表一致，不依赖定时任务是否已把记录更新为逾期
+     * 使用条件聚合代替多次COUNT，借阅记录部分走idx_borrow_user_status_book索引；用户不存在时返回null
+     * 借阅中数量受上限约束，GROUP_CONCAT结果远小于group_concat_max_len
+     */
+    @Select("SELECT u.status AS user_status, " +
+            "COUNT(CASE WHEN br.status = 'overdue' OR br.due_date < NOW() THEN 1 END) AS overdue_count, " +
+            "COUNT(CASE WHEN br.status = 'borrowing' AND br.due_date >= NOW() THEN 1 END) AS borrowing_count, " +
+            "COUNT(CASE WHEN br.status = 'borrowing' AND br.book_id = #{bookId} THEN 1 END) AS same_book_count, " +
+            "GROUP_CONCAT(CASE WHEN br.status = 'borrowing' THEN br.book_id END) AS borrowing_book_ids, " +
+            "MIN(CASE WHEN br.status = 'borrowing' AND br.due_date >= NOW() THEN br.due_date END) AS next_due_date " +
+            "FROM users u " +
+            "LEFT JOIN borrow_records br ON br.user_id = u.id AND br.status IN ('borrowing', 'overdue') " +
+            "WHERE u.id = #{userId} " +
+            "GROUP BY u.id, u.status")
+    BorrowQuotaDTO selectBorrowQuota(@Param("userId") Long userId, @Param("bookId") Long bookId);
+
+    /**
+     * 一次扫描统计各状态借阅数量和有未还图书的用户数（totalUsers不在此查询中）
+     */
+    @Select("SELECT COUNT(*) AS total_borrows, " +
+            "COALESCE(SUM(status = 'borrowing'), 0) AS current_borrowing, " +
+            "COALESCE(SUM(status = 'overdue'), 0) AS overdue_count, " +
+            "COALESCE(SUM(status = 'returned'), 0) AS returned_count, " +
+            "COUNT(DISTINCT CASE WHEN status IN ('borrowing', 'overdue') THEN user_id END) AS active_users " +
+            "FROM borrow_records")
+    BorrowStatisticsDTO selectBorrowStatistics();
+
+    /**
+     * 按图书统计借阅次数，走idx_book_id索引
+     */
+    @Select("SELECT book_id, COUNT(*) AS borrow_count FROM borrow_records GROUP BY book_id")
+    List<BookBorrowCountDTO> selectBorrowCountsByBook();
+
+    /**
+     * 查询给定图书中存在未归还借阅记录的图书ID，一次分组查询代替逐本计数，走idx_book_id索引
+     * 加共享锁读取最新提交的数据，在批量下架的事务中与下架语句看到的结果一致
+     */
+    @Select("<script>" +
+            "SELECT book_id FROM borrow_records " +
+            "WHERE status IN ('borrowing', 'overdue') AND book_id IN " +
+            "<foreach collection='bookIds' item='bookId' open='(' separator=',' close=')'>#{bookId}</foreach>" +
+            "GROUP BY book_id LOCK IN SHARE MODE" +
+            "</script>")
+    List<Long> selectUnreturnedBookIds(@Param("bookIds") List<Long> bookIds);
+
+    /**
+     * 续借：在数据库中延长应还日期并增加续借次数，本人、借阅中、未到期且未达续借上限时才更新，无需先查询记录
+     *
+     * @return 受影响行数，0表示不满足续借条件
+     */
+    @Update("UPDATE borrow_records " +
+            "SET due_date = DATE_ADD(due_date, INTERVAL #{days} DAY), renew_count = renew_count + 1, " +
+            "version = version + 1 " +
+            "WHERE id = #{id} AND user_id = #{userId} AND status = 'borrowing' " +
+            "AND due_date >= #{now} AND renew_count < #{maxRenewCount}")
+    int renew(@Param("id") Long id,
+              @Param("userId") Long userId,
+              @Param("days") Integer days,
+              @Param("maxRenewCount") Integer maxRenewCount,
+              @Param("now") LocalDateTime now);
+
+    /**
+     * 查询已到期但仍为借阅中的最小记录ID，走idx_borrow_status_due_date索引
+     */
+    @Select("SELECT MIN(id) FROM borrow_records WHERE status = 'borrowing' AND due_date < #{now}")
+    Long selectMinOverdueCandidateId(@Param("now") LocalDateTime now);
+
+    /**
+     * 查询已到期但仍为借阅中的最大记录ID
+     */
+    @Select("SELECT MAX(id) FROM borrow_records WHERE status = 'borrowing' AND due_date < #{now}")
+    Long selectMaxOverdueCandidateId(@Param("now") LocalDateTime now);
+
+    /**
+     * 将ID区间内已到期的借阅中记录批量标记为逾期
+     *
+     * @return 更新条数
+     */
+    @Update("UPDATE borrow_records " +
+            "SET status = 'overdue', overdue_days = TIMESTAMPDIFF(DAY, due_date, #{now}), version = version + 1 " +
+            "WHERE id BETWEEN #{fromId} AND #{toId} AND status = 'borrowing' AND due_date < #{now}")
+    int markOverdueInRange(@Param("fromId") Long fromId,
+                           @Param("toId") Long toId,
+                           @Param("now") LocalDateTime now);
+
+    /**
+     * 将应还日期落在[since, now)区间内的借阅中记录标记为逾期，每次最多更新limit条
+     * 只处理上次执行后新到期的记录，走idx_borrow_status_due_date索引
+     *
+     * @return 更新条数
+     */
+    @Update("UPDATE borrow_records " +
+            "SET status = 'overdue', overdue_days = TIMESTAMPDIFF(DAY, due_date, #{now}), version = version + 1 " +
+            "WHERE status = 'borrowing' AND due_date >= #{since} AND due_date < #{now} " +
+            "LIMIT #{limit}")
+    int markOverdueDueBetween(@Param("since") LocalDateTime since,
+                              @Param("now") LocalDateTime now,
+                              @Param("limit") Integer limit);
+
     /**
      * 根据ID查询借阅详情
      */
-    @Select("SELECT br.*, " +
+    @Select("<script>" +
+            "SELECT " + DETAIL_COLUMNS +
             "u.username, u.real_name, " +
             "b.book_name, b.author, " +
             "bc.category_name " +
@@ -66,6 +298,7 @@ public interface BorrowRecordMapper extends BaseMapper<BorrowRecord> {
             "LEFT JOIN users u ON br.user_id = u.id " +
             "LEFT JOIN books b ON br.book_id = b.id " +
             "LEFT JOIN book_categories bc ON b.category_id = bc.id " +
-            "WHERE br.id = #{id}")
+            "WHERE br.id = #{id}" +
+            "</script>")
     BorrowDetailDTO selectBorrowDetailById(@Param("id") Long id);
 }
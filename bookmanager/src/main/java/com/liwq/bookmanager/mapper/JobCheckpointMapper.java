@@ -0,0 +1,24 @@
+package com.liwq.bookmanager.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.liwq.bookmanager.model.JobCheckpoint;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+
+/**
+ * 定时任务检查点Mapper
+ */
+@Mapper
+public interface JobCheckpointMapper extends BaseMapper<JobCheckpoint> {
+
+    /**
+     * 保存任务高水位，不存在时插入
+     */
+    @Insert("INSERT INTO job_checkpoints (job_name, high_water_mark) VALUES (#{jobName}, #{highWaterMark}) " +
+            "ON DUPLICATE KEY UPDATE high_water_mark = VALUES(high_water_mark)")
+    int saveHighWaterMark(@Param("jobName") String jobName,
+                          @Param("highWaterMark") LocalDateTime highWaterMark);
+}
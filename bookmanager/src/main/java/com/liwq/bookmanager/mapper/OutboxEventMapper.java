@@ -0,0 +1,58 @@
+package com.liwq.bookmanager.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.liwq.bookmanager.model.OutboxEvent;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 事务发件箱Mapper
+ */
+@Mapper
+public interface OutboxEventMapper extends BaseMapper<OutboxEvent> {
+
+    /**
+     * 锁定一条待处理事件，已被其他线程锁定时跳过返回null，保证同一事件同时只有一个线程处理
+     */
+    @Select("SELECT id, event_type, aggregate_id, status, attempts, next_attempt_time " +
+            "FROM outbox_events WHERE id = #{id} AND status = 'pending' FOR UPDATE SKIP LOCKED")
+    OutboxEvent selectPendingForUpdate(@Param("id") Long id);
+
+    /**
+     * 查询已到处理时间的待处理事件ID，走idx_outbox_status_next索引
+     */
+    @Select("SELECT id FROM outbox_events WHERE status = 'pending' AND next_attempt_time <= #{now} " +
+            "ORDER BY next_attempt_time, id LIMIT #{limit}")
+    List<Long> selectDueIds(@Param("now") LocalDateTime now, @Param("limit") Integer limit);
+
+    /**
+     * 标记事件已处理，与事件处理在同一事务中提交
+     */
+    @Update("UPDATE outbox_events SET status = 'done', last_error = NULL WHERE id = #{id} AND status = 'pending'")
+    int markDone(@Param("id") Long id);
+
+    /**
+     * 记录一次处理失败：未超过最大次数时推迟下次处理时间，否则标记为重试耗尽
+     * MySQL按顺序执行SET赋值，status判断时attempts已是加1后的值
+     */
+    @Update("UPDATE outbox_events SET attempts = attempts + 1, " +
+            "status = IF(attempts >= #{maxAttempts}, 'failed', 'pending'), " +
+            "next_attempt_time = #{nextAttemptTime}, last_error = #{error} " +
+            "WHERE id = #{id} AND status = 'pending'")
+    int markAttemptFailed(@Param("id") Long id,
+                          @Param("maxAttempts") Integer maxAttempts,
+                          @Param("nextAttemptTime") LocalDateTime nextAttemptTime,
+                          @Param("error") String error);
+
+    /**
+     * 分批删除早于指定时间的已处理事件
+     */
+    @Delete("DELETE FROM outbox_events WHERE status = 'done' AND update_time < #{before} LIMIT #{limit}")
+    int deleteDoneBefore(@Param("before") LocalDateTime before, @Param("limit") Integer limit);
+}
@@ -2,11 +2,18 @@ package com.liwq.bookmanager.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.liwq.bookmanager.dto.DailyCountDTO;
+import com.liwq.bookmanager.dto.PopularReservationBookDTO;
 import com.liwq.bookmanager.dto.ReservationDetailDTO;
+import com.liwq.bookmanager.dto.StatusCountDTO;
 import com.liwq.bookmanager.model.ReservationRecord;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * 预约记录Mapper接口
@@ -18,7 +25,7 @@ public interface ReservationRecordMapper extends BaseMapper<ReservationRecord> {
      * 查询预约详情（包含用户和图书信息）
      */
     @Select("SELECT r.id, r.user_id, u.username, u.real_name, r.book_id, b.book_name, b.author, " +
-            "b.cover_image, r.reservation_date, r.status, r.remark, r.create_time, r.update_time " +
+            "b.cover_image, r.reservation_date, r.status, r.remark, r.hold_expire_time, r.create_time, r.update_time " +
             "FROM reservation_records r " +
             "LEFT JOIN users u ON r.user_id = u.id " +
             "LEFT JOIN books b ON r.book_id = b.id " +
@@ -30,7 +37,7 @@ public interface ReservationRecordMapper extends BaseMapper<ReservationRecord> {
      */
     @Select("<script>" +
             "SELECT r.id, r.user_id, u.username, u.real_name, r.book_id, b.book_name, b.author, " +
-            "b.cover_image, r.reservation_date, r.status, r.remark, r.create_time, r.update_time " +
+            "b.cover_image, r.reservation_date, r.status, r.remark, r.hold_expire_time, r.create_time, r.update_time " +
             "FROM reservation_records r " +
             "LEFT JOIN users u ON r.user_id = u.id " +
             "LEFT JOIN books b ON r.book_id = b.id " +
@@ -49,7 +56,7 @@ public interface ReservationRecordMapper extends BaseMapper<ReservationRecord> {
      */
     @Select("<script>" +
             "SELECT r.id, r.user_id, u.username, u.real_name, r.book_id, b.book_name, b.author, " +
-            "b.cover_image, r.reservation_date, r.status, r.remark, r.create_time, r.update_time " +
+            "b.cover_image, r.reservation_date, r.status, r.remark, r.hold_expire_time, r.create_time, r.update_time " +
             "FROM reservation_records r " +
             "LEFT JOIN users u ON r.user_id = u.id " +
             "LEFT JOIN books b ON r.book_id = b.id " +
@@ -69,4 +76,159 @@ public interface ReservationRecordMapper extends BaseMapper<ReservationRecord> {
                                                         @Param("userId") Long userId,
                                                         @Param("bookId") Long bookId,
                                                         @Param("status") String status);
+
+    /**
+     * 按游标查询我的预约记录（键集分页）
+     */
+    @Select("<script>" +
+            "SELECT r.id, r.user_id, u.username, u.real_name, r.book_id, b.book_name, b.author, " +
+            "b.cover_image, r.reservation_date, r.status, r.remark, r.hold_expire_time, r.create_time, r.update_time " +
+            "FROM reservation_records r " +
+            "LEFT JOIN users u ON r.user_id = u.id " +
+            "LEFT JOIN books b ON r.book_id = b.id " +
+            "WHERE r.user_id = #{userId} " +
+            "<if test='status != null and status != \"\"'>" +
+            "AND r.status = #{status} " +
+            "</if>" +
+            "<if test='cursorTime != null'>" +
+            "AND (r.create_time &lt; #{cursorTime} OR (r.create_time = #{cursorTime} AND r.id &lt; #{cursorId})) " +
+            "</if>" +
+            "ORDER BY r.create_time DESC, r.id DESC " +
+            "LIMIT #{limit}" +
+            "</script>")
+    List<ReservationDetailDTO> selectMyReservationListByCursor(@Param("userId") Long userId,
+                                                               @Param("status") String status,
+                                                               @Param("cursorTime") LocalDateTime cursorTime,
+                                                               @Param("cursorId") Long cursorId,
+                                                               @Param("limit") Integer limit);
+
+    /**
+     * 按游标查询所有预约记录（管理员，键集分页）
+     */
+    @Select("<script>" +
+            "SELECT r.id, r.user_id, u.username, u.real_name, r.book_id, b.book_name, b.author, " +
+            "b.cover_image, r.reservation_date, r.status, r.remark, r.hold_expire_time, r.create_time, r.update_time " +
+            "FROM reservation_records r " +
+            "LEFT JOIN users u ON r.user_id = u.id " +
+            "LEFT JOIN books b ON r.book_id = b.id " +
+            "WHERE 1=1 " +
+            "<if test='userId != null'>" +
+            "AND r.user_id = #{userId} " +
+            "</if>" +
+            "<if test='bookId != null'>" +
+            "AND r.book_id = #{bookId} " +
+            "</if>" +
+            "<if test='status != null and status != \"\"'>" +
+            "AND r.status = #{status} " +
+            "</if>" +
+            "<if test='cursorTime != null'>" +
+            "AND (r.create_time &lt; #{cursorTime} OR (r.create_time = #{cursorTime} AND r.id &lt; #{cursorId})) " +
+            "</if>" +
+            "ORDER BY r.create_time DESC, r.id DESC " +
+            "LIMIT #{limit}" +
+            "</script>")
+    List<ReservationDetailDTO> selectAllReservationListByCursor(@Param("userId") Long userId,
+                                                                @Param("bookId") Long bookId,
+                                                                @Param("status") String status,
+                                                                @Param("cursorTime") LocalDateTime cursorTime,
+                                                                @Param("cursorId") Long cursorId,
+                                                                @Param("limit") Integer limit);
+
+    /**
+     * 按状态分组统计预约数量
+     */
+    @Select("SELECT status, COUNT(*) AS count FROM reservation_records GROUP BY status")
+    List<StatusCountDTO> selectStatusCounts();
+
+    /**
+     * 按预约日期统计since之后每天的预约数量，走idx_reservation_date索引
+     */
+    @Select("SELECT DATE(reservation_date) AS date, COUNT(*) AS count " +
+            "FROM reservation_records " +
+            "WHERE reservation_date >= #{since} " +
+            "GROUP BY DATE(reservation_date) " +
+            "ORDER BY date")
+    List<DailyCountDTO> selectDailyCounts(@Param("since") LocalDateTime since);
+
+    /**
+     * 查询预约次数最多的图书
+     */
+    @Select("SELECT t.book_id, b.book_name, b.author, b.cover_image, t.reservation_count " +
+            "FROM (SELECT book_id, COUNT(*) AS reservation_count FROM reservation_records " +
+            "GROUP BY book_id ORDER BY reservation_count DESC LIMIT #{limit}) t " +
+            "LEFT JOIN books b ON t.book_id = b.id " +
+            "ORDER BY t.reservation_count DESC")
+    List<PopularReservationBookDTO> selectPopularBooks(@Param("limit") Integer limit);
+
+    /**
+     * 预约状态从fromStatus变为toStatus，remark不为null时同时更新备注
+     * 以当前状态作为条件，无需先查询记录；并发操作时只有一个能成功
+     *
+     * @return 受影响行数，0表示记录不存在或状态已不是fromStatus
+     */
+    @Update("<script>" +
+            "UPDATE reservation_records SET status = #{toStatus}, version = version + 1" +
+            "<if test='remark != null'>, remark = #{remark}</if> " +
+            "WHERE id = #{id} AND status = #{fromStatus}" +
+            "</script>")
+    int transitionStatus(@Param("id") Long id,
+                         @Param("fromStatus") String fromStatus,
+                         @Param("toStatus") String toStatus,
+                         @Param("remark") String remark);
+
+    /**
+     * 用户取消自己待审核或已通过的预约
+     *
+     * @return 受影响行数，0表示记录不存在、不属于该用户或状态不允许取消
+     */
+    @Update("UPDATE reservation_records SET status = 'cancelled', version = version + 1 " +
+            "WHERE id = #{id} AND user_id = #{userId} AND status IN ('pending', 'approved')")
+    int cancelByUser(@Param("id") Long id, @Param("userId") Long userId);
+
+    /**
+     * 取出图书排队中最早的已通过预约并加锁，走idx_reservation_book_queue索引只读一行
+     * SKIP LOCKED跳过其他事务正在处理的预约，同一本书同时归还多册时各自通知不同的用户
+     */
+    @Select("SELECT id FROM reservation_records " +
+            "WHERE book_id = #{bookId} AND status = 'approved' " +
+            "ORDER BY create_time, id LIMIT 1 FOR UPDATE SKIP LOCKED")
+    Long selectNextInQueueForUpdate(@Param("bookId") Long bookId);
+
+    /**
+     * 到书通知：已通过的预约改为已通知，并设置保留截止时间
+     *
+     * @return 受影响行数
+     */
+    @Update("UPDATE reservation_records " +
+            "SET status = 'completed', remark = #{remark}, hold_expire_time = #{holdExpireTime}, version = version + 1 " +
+            "WHERE id = #{id} AND status = 'approved'")
+    int notifyHold(@Param("id") Long id,
+                   @Param("remark") String remark,
+                   @Param("holdExpireTime") LocalDateTime holdExpireTime);
+
+    /**
+     * 用户借到预约的图书后清除保留截止时间，不再参与过期检查
+     */
+    @Update("UPDATE reservation_records SET hold_expire_time = NULL, version = version + 1 " +
+            "WHERE user_id = #{userId} AND book_id = #{bookId} AND status = 'completed' " +
+            "AND hold_expire_time IS NOT NULL")
+    int releaseHold(@Param("userId") Long userId, @Param("bookId") Long bookId);
+
+    /**
+     * 查询保留已过期的到书通知，走idx_reservation_status_hold索引
+     */
+    @Select("SELECT id, book_id FROM reservation_records " +
+            "WHERE status = 'completed' AND hold_expire_time < #{now} " +
+            "ORDER BY hold_expire_time LIMIT #{limit}")
+    List<ReservationRecord> selectExpiredHolds(@Param("now") LocalDateTime now, @Param("limit") Integer limit);
+
+    /**
+     * 保留过期未借阅的预约标记为已过期
+     *
+     * @return 受影响行数，0表示期间已借阅或已被其他实例处理
+     */
+    @Update("UPDATE reservation_records " +
+            "SET status = 'expired', remark = #{remark}, hold_expire_time = NULL, version = version + 1 " +
+            "WHERE id = #{id} AND status = 'completed' AND hold_expire_time < #{now}")
+    int expireHold(@Param("id") Long id, @Param("remark") String remark, @Param("now") LocalDateTime now);
 }
@@ -3,10 +3,47 @@ package com.liwq.bookmanager.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.liwq.bookmanager.model.User;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
 
 /**
  * 用户Mapper接口
  */
 @Mapper
 public interface UserMapper extends BaseMapper<User> {
+
+    /**
+     * 修改用户状态
+     *
+     * @return 受影响行数，0表示用户不存在
+     */
+    @Update("UPDATE users SET status = #{status} WHERE id = #{id}")
+    int updateStatus(@Param("id") Long id, @Param("status") Integer status);
+
+    /**
+     * 修改密码
+     */
+    @Update("UPDATE users SET password = #{password} WHERE id = #{id}")
+    int updatePassword(@Param("id") Long id, @Param("password") String password);
+
+    /**
+     * 修改个人资料，只写入不为null的字段，调用方需保证至少有一个字段不为null
+     *
+     * @return 受影响行数，0表示用户不存在
+     */
+    @Update("<script>" +
+            "UPDATE users " +
+            "<set>" +
+            "<if test='realName != null'> real_name = #{realName}, </if>" +
+            "<if test='phone != null'> phone = #{phone}, </if>" +
+            "<if test='email != null'> email = #{email}, </if>" +
+            "<if test='role != null'> role = #{role}, </if>" +
+            "</set>" +
+            "WHERE id = #{id}" +
+            "</script>")
+    int updateProfile(@Param("id") Long id,
+                      @Param("realName") String realName,
+                      @Param("phone") String phone,
+                      @Param("email") String email,
+                      @Param("role") String role);
 }
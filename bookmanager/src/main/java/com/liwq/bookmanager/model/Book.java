@@ -3,6 +3,7 @@ package com.liwq.bookmanager.model;
 import com.baomidou.mybatisplus.annotation.IdType;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
+import com.baomidou.mybatisplus.annotation.Version;
 import lombok.Data;
 
 import java.math.BigDecimal;
@@ -82,6 +83,12 @@ public class Book {
      */
     private Integer status;
 
+    /**
+     * 乐观锁版本号，通过实体更新时自动校验并加1，自定义UPDATE语句需同时执行version = version + 1
+     */
+    @Version
+    private Integer version;
+
     /**
      * 创建时间
      */
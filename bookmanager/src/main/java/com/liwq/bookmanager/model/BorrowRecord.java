@@ -3,6 +3,7 @@ package com.liwq.bookmanager.model;
 import com.baomidou.mybatisplus.annotation.IdType;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
+import com.baomidou.mybatisplus.annotation.Version;
 import lombok.Data;
 
 import java.time.LocalDateTime;
@@ -33,6 +34,9 @@ public class BorrowRecord {
 
     private String status;
 
+    @Version
+    private Integer version;
+
     private LocalDateTime createTime;
 
     private LocalDateTime updateTime;
@@ -0,0 +1,32 @@
+package com.liwq.bookmanager.model;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 定时任务检查点实体类
+ */
+@Data
+@TableName("job_checkpoints")
+public class JobCheckpoint {
+
+    /**
+     * 任务名称
+     */
+    @TableId(type = IdType.INPUT)
+    private String jobName;
+
+    /**
+     * 高水位：上次执行已处理到的时间点
+     */
+    private LocalDateTime highWaterMark;
+
+    /**
+     * 更新时间
+     */
+    private LocalDateTime updateTime;
+}
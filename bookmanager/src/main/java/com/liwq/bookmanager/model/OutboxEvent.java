@@ -0,0 +1,62 @@
+package com.liwq.bookmanager.model;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 事务发件箱事件实体类
+ */
+@Data
+@TableName("outbox_events")
+public class OutboxEvent {
+
+    /**
+     * 主键ID
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 事件类型：book_returned图书归还
+     */
+    private String eventType;
+
+    /**
+     * 事件关联的业务ID（如图书ID）
+     */
+    private Long aggregateId;
+
+    /**
+     * 状态：pending待处理，done已处理，failed重试耗尽
+     */
+    private String status;
+
+    /**
+     * 已失败次数
+     */
+    private Integer attempts;
+
+    /**
+     * 下次可处理时间
+     */
+    private LocalDateTime nextAttemptTime;
+
+    /**
+     * 最近一次失败原因
+     */
+    private String lastError;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+
+    /**
+     * 更新时间
+     */
+    private LocalDateTime updateTime;
+}
@@ -3,6 +3,7 @@ package com.liwq.bookmanager.model;
 import com.baomidou.mybatisplus.annotation.IdType;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
+import com.baomidou.mybatisplus.annotation.Version;
 import lombok.Data;
 
 import java.time.LocalDateTime;
@@ -36,7 +37,7 @@ public class ReservationRecord {
     private LocalDateTime reservationDate;
 
     /**
-     * 状态：pending待审核，approved已通过，cancelled已取消，completed已完成
+     * 状态：pending待审核，approved已通过（排队中），cancelled已取消，completed已到书通知，expired已过期
      */
     private String status;
 
@@ -45,6 +46,17 @@ public class ReservationRecord {
      */
     private String remark;
 
+    /**
+     * 到书通知后的保留截止时间，借阅后清空
+     */
+    private LocalDateTime holdExpireTime;
+
+    /**
+     * 乐观锁版本号
+     */
+    @Version
+    private Integer version;
+
     /**
      * 创建时间
      */
@@ -0,0 +1,17 @@
+package com.liwq.bookmanager.notification;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 预约状态变化事件，事务提交后推送给预约用户
+ */
+@Getter
+@RequiredArgsConstructor
+public class ReservationChangedEvent {
+
+    /**
+     * 预约记录ID
+     */
+    private final Long reservationId;
+}
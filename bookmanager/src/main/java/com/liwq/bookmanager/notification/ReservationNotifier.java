@@ -0,0 +1,239 @@
+package com.liwq.bookmanager.notification;
+
+import com.liwq.bookmanager.dto.ReservationDetailDTO;
+import com.liwq.bookmanager.mapper.ReservationRecordMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 预约通知推送（Server-Sent Events）
+ * 按用户保存已订阅的连接，预约状态变化的事务提交后把最新的预约记录推送给该用户的所有标签页，前端不再轮询。
+ * 连接使用Servlet异步请求，空闲时不占用线程；定期发送心跳注释，及时发现已断开的连接并防止代理超时断开。
+ * 写入连接可能因客户端不读取而阻塞，所有发送都在专用线程池中执行，不占用定时任务和默认异步线程池；
+ * 阻塞的写入在Tomcat写超时（server.tomcat.connection-timeout）后失败，一个连接的上一次发送超过stall-timeout
+ * 仍未完成时，下一条消息到来即移除该连接，不再为它占用更多发送线程。
+ * 状态推送不会被丢弃：发送队列已满时直接结束该连接，浏览器重连后重新拉取预约列表。
+ */
+@Slf4j
+@Component
+public class ReservationNotifier {
+
+    /**
+     * 推送的事件名，前端按该名称监听
+     */
+    private static final String EVENT_NAME = "reservation";
+
+    private final ReservationRecordMapper reservationRecordMapper;
+
+    /**
+     * 连接超时时间（毫秒），超时后浏览器自动重连
+     */
+    private final long timeoutMillis;
+
+    /**
+     * 单个用户最多同时保持的连接数，超出时关闭最早的连接
+     */
+    private final int maxConnectionsPerUser;
+
+    /**
+     * 全部用户最多同时保持的连接数
+     */
+    private final int maxConnections;
+
+    private final Map<Long, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    /**
+     * 发送中的连接及开始发送的时间，用于发现因客户端不读取而阻塞的连接
+     */
+    private final Map<SseEmitter, Long> sendingSince = new ConcurrentHashMap<>();
+
+    /**
+     * 上一次发送超过该时间（毫秒）仍未完成时视为阻塞
+     */
+    private final long stallTimeoutMillis;
+
+    /**
+     * 上一轮心跳是否仍在发送，未完成时跳过本轮
+     */
+    private final AtomicBoolean heartbeatRunning = new AtomicBoolean();
+
+    /**
+     * 发送线程池，队列满时拒绝提交：状态推送被拒绝时结束连接让浏览器重连，心跳被拒绝时跳过本轮
+     */
+    private final ThreadPoolExecutor sendExecutor;
+
+    public ReservationNotifier(ReservationRecordMapper reservationRecordMapper,
+                               @Value("${reservation.notification.timeout:1800000}") long timeoutMillis,
+                               @Value("${reservation.notification.max-connections-per-user:5}") int maxConnectionsPerUser,
+                               @Value("${reservation.notification.max-connections:20000}") int maxConnections,
+                               @Value("${reservation.notification.send-pool-size:4}") int sendPoolSize,
+                               @Value("${reservation.notification.send-queue-capacity:20000}") int sendQueueCapacity,
+                               @Value("${reservation.notification.stall-timeout:5000}") long stallTimeoutMillis) {
+        this.reservationRecordMapper = reservationRecordMapper;
+        this.timeoutMillis = timeoutMillis;
+        this.maxConnectionsPerUser = Math.max(1, maxConnectionsPerUser);
+        this.maxConnections = maxConnections;
+        this.stallTimeoutMillis = stallTimeoutMillis;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.sendExecutor = new ThreadPoolExecutor(sendPoolSize, sendPoolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(sendQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "sse-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 订阅当前用户的预约通知
+     */
+    public SseEmitter subscribe(Long userId) {
+        if (connectionCount.get() >= maxConnections) {
+            throw new RuntimeException("通知连接数已达上限，请稍后再试");
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Set<SseEmitter> emitters = subscribers.compute(userId, (key, current) -> {
+            Set<SseEmitter> set = current != null ? current : new CopyOnWriteArraySet<>();
+            set.add(emitter);
+            return set;
+        });
+        connectionCount.incrementAndGet();
+        emitter.onCompletion(() -> remove(userId, emitter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> remove(userId, emitter));
+
+        // 同一用户打开过多标签页时关闭最早的连接
+        if (emitters.size() > maxConnectionsPerUser) {
+            SseEmitter oldest = emitters.iterator().next();
+            remove(userId, oldest);
+            oldest.complete();
+        }
+
+        // 立即发送一条注释，让浏览器确认连接已建立
+        send(userId, emitter, SseEmitter.event().comment("connected"));
+        return emitter;
+    }
+
+    /**
+     * 预约状态变化的事务提交后异步推送，回滚时不推送；订阅用户不在线时不查询数据库
+     */
+    @Async
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onReservationChanged(ReservationChangedEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        ReservationDetailDTO detail = reservationRecordMapper.selectReservationDetailById(event.getReservationId());
+        if (detail == null) {
+            return;
+        }
+        Set<SseEmitter> emitters = subscribers.get(detail.getUserId());
+        if (emitters == null) {
+            return;
+        }
+        Long userId = detail.getUserId();
+        for (SseEmitter emitter : emitters) {
+            SseEmitter.SseEventBuilder message = SseEmitter.event()
+                    .name(EVENT_NAME)
+                    .id(String.valueOf(detail.getId()))
+                    .data(detail, MediaType.APPLICATION_JSON);
+            try {
+                sendExecutor.execute(() -> send(userId, emitter, message));
+            } catch (RejectedExecutionException e) {
+                // 不丢弃推送：结束连接，浏览器自动重连并重新拉取预约列表
+                log.warn("预约通知发送队列已满，关闭连接让客户端重连，用户ID：{}", userId);
+                remove(userId, emitter);
+                emitter.complete();
+            }
+        }
+    }
+
+    /**
+     * 定期向所有连接发送心跳（默认每25秒）
+     * 全部连接合并为一个任务提交到发送线程池，只占一个队列位置；上一轮未发完或队列已满时跳过本轮
+     */
+    @Scheduled(fixedDelayString = "${reservation.notification.heartbeat-interval:25000}")
+    public void heartbeat() {
+        if (subscribers.isEmpty() || !heartbeatRunning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            sendExecutor.execute(() -> {
+                try {
+                    for (Map.Entry<Long, Set<SseEmitter>> entry : subscribers.entrySet()) {
+                        for (SseEmitter emitter : entry.getValue()) {
+                            send(entry.getKey(), emitter, SseEmitter.event().comment("heartbeat"));
+                        }
+                    }
+                } finally {
+                    heartbeatRunning.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            heartbeatRunning.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sendExecutor.shutdownNow();
+    }
+
+    private void send(Long userId, SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        long now = System.currentTimeMillis();
+        Long started = sendingSince.putIfAbsent(emitter, now);
+        if (started != null && now - started > stallTimeoutMillis) {
+            // 上一次发送仍阻塞：移除连接不再发送，阻塞的写入超时失败后连接随之结束，浏览器重连时重新拉取
+            log.warn("预约通知连接发送阻塞，移除连接，用户ID：{}", userId);
+            remove(userId, emitter);
+            return;
+        }
+        // 其他线程正在正常发送时直接发送，SseEmitter内部串行写入；由最先开始发送的线程负责清除标记
+        boolean owner = started == null;
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            // 客户端已断开或连接已结束
+            remove(userId, emitter);
+            emitter.completeWithError(e);
+        } finally {
+            if (owner) {
+                sendingSince.remove(emitter, now);
+            }
+        }
+    }
+
+    private void remove(Long userId, SseEmitter emitter) {
+        // 在compute中移除，避免与同一用户的新订阅交错导致新连接丢失
+        subscribers.computeIfPresent(userId, (key, emitters) -> {
+            if (emitters.remove(emitter)) {
+                connectionCount.decrementAndGet();
+            }
+            sendingSince.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
@@ -0,0 +1,238 @@
+package com.liwq.bookmanager.outbox;
+
+import com.liwq.bookmanager.mapper.OutboxEventMapper;
+import com.liwq.bookmanager.model.OutboxEvent;
+import com.liwq.bookmanager.service.ReservationService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 事务发件箱分发器
+ * 业务事务中写入发件箱事件，提交后交给后台线程处理，接口响应不再等待后续处理。
+ * 每个事件的锁定、处理和标记已处理在同一事务中完成，事件只会生效一次；处理失败时回滚并按退避时间重试。
+ * 线程池满或服务重启时未处理的事件由定时轮询补发，已在本实例排队或处理中的事件不会重复提交。
+ */
+@Slf4j
+@Component
+public class OutboxDispatcher {
+
+    /**
+     * 图书归还：按排队顺序通知预约用户
+     */
+    public static final String BOOK_RETURNED = "book_returned";
+
+    // 失败原因最大保存长度，与表字段一致
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final OutboxEventMapper outboxEventMapper;
+
+    private final ReservationService reservationService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * 最大处理次数，超过后标记为重试耗尽
+     */
+    private final int maxAttempts;
+
+    /**
+     * 首次重试的等待时间（毫秒），之后每次翻倍
+     */
+    private final long backoffMillis;
+
+    /**
+     * 最大重试等待时间（毫秒）
+     */
+    private final long maxBackoffMillis;
+
+    private final int pollBatchSize;
+
+    private final int retentionDays;
+
+    /**
+     * 有界线程池，队列满或已关闭时拒绝提交，事件保持待处理状态由轮询补发
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * 已提交到线程池尚未处理完的事件ID，轮询时跳过，避免同一事件在队列中重复排队
+     */
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    public OutboxDispatcher(OutboxEventMapper outboxEventMapper,
+                            ReservationService reservationService,
+                            TransactionTemplate transactionTemplate,
+                            @Value("${outbox.pool-size:2}") int poolSize,
+                            @Value("${outbox.queue-capacity:1000}") int queueCapacity,
+                            @Value("${outbox.max-attempts:10}") int maxAttempts,
+                            @Value("${outbox.backoff:1000}") long backoffMillis,
+                            @Value("${outbox.max-backoff:300000}") long maxBackoffMillis,
+                            @Value("${outbox.poll-batch-size:100}") int pollBatchSize,
+                            @Value("${outbox.retention-days:7}") int retentionDays) {
+        this.outboxEventMapper = outboxEventMapper;
+        this.reservationService = reservationService;
+        this.transactionTemplate = transactionTemplate;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = backoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.pollBatchSize = pollBatchSize;
+        this.retentionDays = retentionDays;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "outbox-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 在当前事务中写入事件，事务提交后立即提交到后台处理，回滚时事件一起撤销
+     */
+    public void publish(String eventType, Long aggregateId) {
+        OutboxEvent event = new OutboxEvent();
+        event.setEventType(eventType);
+        event.setAggregateId(aggregateId);
+        event.setStatus("pending");
+        event.setAttempts(0);
+        event.setNextAttemptTime(LocalDateTime.now());
+        outboxEventMapper.insert(event);
+
+        Long eventId = event.getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(eventId);
+                }
+            });
+        } else {
+            submit(eventId);
+        }
+    }
+
+    /**
+     * 定期补发到期的待处理事件（默认每5秒）：提交后未能入队、处理失败等待重试或服务重启遗留的事件
+     */
+    @Scheduled(fixedDelayString = "${outbox.poll-interval:5000}")
+    public void poll() {
+        List<Long> ids = outboxEventMapper.selectDueIds(LocalDateTime.now(), pollBatchSize);
+        for (Long id : ids) {
+            // 队列剩余空间不足时留到下次轮询；已在队列中或正在处理的事件由submit跳过
+            if (executor.getQueue().remainingCapacity() == 0) {
+                break;
+            }
+            submit(id);
+        }
+    }
+
+    /**
+     * 定期删除超过保留天数的已处理事件（默认每天凌晨3点）
+     */
+    @Scheduled(cron = "${outbox.cleanup-cron:0 0 3 * * ?}")
+    public void cleanup() {
+        LocalDateTime before = LocalDateTime.now().minusDays(retentionDays);
+        int deleted = 0;
+        int count;
+        do {
+            count = outboxEventMapper.deleteDoneBefore(before, pollBatchSize * 10);
+            deleted += count;
+        } while (count > 0);
+        if (deleted > 0) {
+            log.info("清理已处理的发件箱事件{}条", deleted);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void submit(Long eventId) {
+        if (!inFlight.add(eventId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    process(eventId);
+                } finally {
+                    inFlight.remove(eventId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 队列已满或线程池已关闭，事件保持待处理状态，由之后的轮询（或重启后）处理
+            inFlight.remove(eventId);
+        }
+    }
+
+    /**
+     * 处理一个事件：锁定、执行、标记已处理在同一事务中，失败时整体回滚后记录失败次数
+     */
+    private void process(Long eventId) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                OutboxEvent event = outboxEventMapper.selectPendingForUpdate(eventId);
+                if (event == null) {
+                    // 已处理、已放弃或正被其他线程处理
+                    return;
+                }
+                handle(event);
+                outboxEventMapper.markDone(eventId);
+            });
+        } catch (Exception e) {
+            recordFailure(eventId, e);
+        }
+    }
+
+    private void handle(OutboxEvent event) {
+        if (BOOK_RETURNED.equals(event.getEventType())) {
+            reservationService.handleBookReturnNotification(event.getAggregateId());
+        } else {
+            throw new IllegalStateException("未知的发件箱事件类型：" + event.getEventType());
+        }
+    }
+
+    private void recordFailure(Long eventId, Exception cause) {
+        try {
+            OutboxEvent event = outboxEventMapper.selectById(eventId);
+            if (event == null || !"pending".equals(event.getStatus())) {
+                return;
+            }
+            int attempts = event.getAttempts() + 1;
+            long delay = Math.min(backoffMillis << Math.min(attempts - 1, 20), maxBackoffMillis);
+            String error = String.valueOf(cause.getMessage());
+            if (error.length() > MAX_ERROR_LENGTH) {
+                error = error.substring(0, MAX_ERROR_LENGTH);
+            }
+            outboxEventMapper.markAttemptFailed(eventId, maxAttempts,
+                    LocalDateTime.now().plus(delay, ChronoUnit.MILLIS), error);
+            if (attempts >= maxAttempts) {
+                log.error("发件箱事件处理重试耗尽，事件ID：{}，类型：{}", eventId, event.getEventType(), cause);
+            } else {
+                log.warn("发件箱事件处理失败，{}ms后重试，事件ID：{}，原因：{}", delay, eventId, error);
+            }
+        } catch (Exception e) {
+            log.error("记录发件箱事件失败次数出错，事件ID：{}", eventId, e);
+        }
+    }
+}
@@ -0,0 +1,530 @@
+package com.liwq.bookmanager.search;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.liwq.bookmanager.mapper.BookMapper;
+import com.liwq.bookmanager.model.Book;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 图书全文检索索引
+ * 在内存中对书名、作者、出版社建立双字倒排索引，适合没有空格分词的中文书名。
+ * 查询词按双字切分后对倒排表求交集得到候选，再校验字段确实包含查询词，匹配结果与LIKE '%x%'一致。
+ * 查询耗时与候选数量成正比（候选逐个校验，只用有界堆保留到当前页为止的结果），常见双字的候选可能占馆藏的很大比例；
+ * 单字关键字的候选过多且没有倒排表，不走索引，由调用方回退到数据库（见{@link #supports}）。
+ * 图书新增、修改、上下架时同步更新；启动时和手动重建时从数据库全量加载，重建期间的修改不会丢失。
+ */
+@Slf4j
+@Component
+public class BookSearchIndex {
+
+    /**
+     * 结果排序：相关度倒序，相同时按创建时间、ID倒序（与数据库查询的默认排序一致）
+     */
+    private static final Comparator<Hit> HIT_ORDER = (a, b) -> compareHit(a.score, a.book, b);
+
+    /**
+     * 走索引的关键字最少字数
+     */
+    private static final int MIN_TERM_LENGTH = 2;
+
+    private final BookMapper bookMapper;
+
+    private final boolean enabled;
+
+    private final int batchSize;
+
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    private volatile IndexData current = new IndexData();
+
+    /**
+     * 正在重建的新索引，重建期间的修改同时写入，由当前对象的监视器保护
+     */
+    private IndexData rebuilding;
+
+    /**
+     * 是否已完成首次加载，未完成时查询回退到数据库
+     */
+    private volatile boolean ready;
+
+    public BookSearchIndex(BookMapper bookMapper,
+                           @Value("${search.enabled:true}") boolean enabled,
+                           @Value("${search.build-batch-size:5000}") int batchSize) {
+        this.bookMapper = bookMapper;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 索引是否可用
+     */
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    /**
+     * 应用启动后在后台构建索引，构建完成前查询走数据库
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("图书搜索索引构建失败，查询将回退到数据库", e);
+        }
+    }
+
+    /**
+     * 从数据库按ID顺序分批加载全部图书重建索引，完成后整体替换旧索引
+     *
+     * @return 索引中的图书数量
+     */
+    public int rebuild() {
+        if (!enabled) {
+            throw new RuntimeException("图书搜索索引未开启");
+        }
+        if (!rebuildLock.tryLock()) {
+            throw new RuntimeException("搜索索引正在重建，请稍后再试");
+        }
+        try {
+            long start = System.currentTimeMillis();
+            IndexData fresh = new IndexData();
+            synchronized (this) {
+                rebuilding = fresh;
+            }
+            try {
+                long lastId = 0;
+                List<Book> books;
+                do {
+                    LambdaQueryWrapper<Book> wrapper = new LambdaQueryWrapper<>();
+                    wrapper.select(Book::getId, Book::getBookName, Book::getAuthor, Book::getPublisher,
+                                    Book::getCategoryId, Book::getStatus, Book::getCreateTime)
+                            .gt(Book::getId, lastId)
+                            .orderByAsc(Book::getId)
+                            .last("LIMIT " + batchSize);
+                    books = bookMapper.selectList(wrapper);
+                    for (Book book : books) {
+                        fresh.load(IndexedBook.of(book));
+                    }
+                    if (!books.isEmpty()) {
+                        lastId = books.get(books.size() - 1).getId();
+                    }
+                } while (books.size() == batchSize);
+
+                synchronized (this) {
+                    current = fresh;
+                }
+            } finally {
+                synchronized (this) {
+                    rebuilding = null;
+                }
+            }
+            ready = true;
+            log.info("图书搜索索引重建完成，共{}本，耗时{}ms", fresh.size(), System.currentTimeMillis() - start);
+            return fresh.size();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * 新增或更新图书索引
+     */
+    public synchronized void index(Book book) {
+        if (!enabled) {
+            return;
+        }
+        IndexedBook doc = IndexedBook.of(book);
+        current.upsert(doc);
+        if (rebuilding != null) {
+            rebuilding.upsert(doc);
+        }
+    }
+
+    /**
+     * 删除图书索引
+     */
+    public synchronized void remove(Long bookId) {
+        if (!enabled) {
+            return;
+        }
+        current.remove(bookId);
+        if (rebuilding != null) {
+            rebuilding.remove(bookId);
+        }
+    }
+
+    /**
+     * 关键字是否都能走索引：单字关键字没有倒排表，交给数据库查询
+     */
+    public boolean supports(String bookName, String author, String publisher) {
+        return supportsTerm(bookName) && supportsTerm(author) && supportsTerm(publisher);
+    }
+
+    /**
+     * 检索图书，结果按相关度倒序，相关度相同时按创建时间倒序
+     * 书名、作者、出版社至少传一个关键字，各条件之间为且的关系，每个关键字至少两个字
+     */
+    public SearchResult search(String bookName, String author, String publisher,
+                               Long categoryId, Integer status, long offset, int limit) {
+        Map<Field, String> terms = new EnumMap<>(Field.class);
+        putTerm(terms, Field.BOOK_NAME, bookName);
+        putTerm(terms, Field.AUTHOR, author);
+        putTerm(terms, Field.PUBLISHER, publisher);
+        if (terms.isEmpty()) {
+            throw new IllegalArgumentException("检索关键字不能为空");
+        }
+        for (String term : terms.values()) {
+            if (term.length() < MIN_TERM_LENGTH) {
+                throw new IllegalArgumentException("检索关键字至少" + MIN_TERM_LENGTH + "个字");
+            }
+        }
+        return current.search(terms, categoryId, status, offset, limit);
+    }
+
+    public int size() {
+        return current.size();
+    }
+
+    private static boolean supportsTerm(String value) {
+        return !StringUtils.hasText(value) || value.trim().length() >= MIN_TERM_LENGTH;
+    }
+
+    /**
+     * 按HIT_ORDER比较一本图书与已有结果，无需为每个候选创建Hit
+     */
+    private static int compareHit(int score, IndexedBook book, Hit other) {
+        if (score != other.score) {
+            return Integer.compare(other.score, score);
+        }
+        int byTime = other.book.createTime.compareTo(book.createTime);
+        if (byTime != 0) {
+            return byTime;
+        }
+        return Long.compare(other.book.id, book.id);
+    }
+
+    private static void putTerm(Map<Field, String> terms, Field field, String value) {
+        if (StringUtils.hasText(value)) {
+            terms.put(field, normalize(value.trim()));
+        }
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 索引用词：每两个相邻字（单字关键字不走索引，不建单字倒排表）
+     */
+    private static Set<String> indexTokens(String text) {
+        Set<String> tokens = new HashSet<>();
+        for (int i = 0; i + 1 < text.length(); i++) {
+            tokens.add(text.substring(i, i + 2));
+        }
+        return tokens;
+    }
+
+    /**
+     * 查询用词：所有相邻两字
+     */
+    private static Set<String> queryTokens(String term) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (int i = 0; i + 1 < term.length(); i++) {
+            tokens.add(term.substring(i, i + 2));
+        }
+        return tokens;
+    }
+
+    /**
+     * 检索结果：匹配总数和当前页的图书ID
+     */
+    @Getter
+    public static class SearchResult {
+
+        private final long total;
+
+        private final List<Long> ids;
+
+        SearchResult(long total, List<Long> ids) {
+            this.total = total;
+            this.ids = ids;
+        }
+    }
+
+    /**
+     * 被索引的字段
+     */
+    private enum Field {
+        BOOK_NAME, AUTHOR, PUBLISHER;
+
+        String valueOf(IndexedBook book) {
+            switch (this) {
+                case BOOK_NAME:
+                    return book.bookName;
+                case AUTHOR:
+                    return book.author;
+                default:
+                    return book.publisher;
+            }
+        }
+    }
+
+    /**
+     * 索引中保存的图书字段（已转小写）
+     */
+    private static class IndexedBook {
+
+        private final long id;
+        private final String bookName;
+        private final String author;
+        private final String publisher;
+        private final Long categoryId;
+        private final Integer status;
+        private final LocalDateTime createTime;
+
+        private IndexedBook(Book book) {
+            this.id = book.getId();
+            this.bookName = normalize(book.getBookName());
+            this.author = normalize(book.getAuthor());
+            this.publisher = normalize(book.getPublisher());
+            this.categoryId = book.getCategoryId();
+            this.status = book.getStatus();
+            this.createTime = book.getCreateTime() != null ? book.getCreateTime() : LocalDateTime.now();
+        }
+
+        static IndexedBook of(Book book) {
+            return new IndexedBook(book);
+        }
+    }
+
+    /**
+     * 命中的图书及相关度
+     */
+    private static class Hit {
+
+        private final IndexedBook book;
+        private final int score;
+
+        Hit(IndexedBook book, int score) {
+            this.book = book;
+            this.score = score;
+        }
+    }
+
+    /**
+     * 一份完整的索引数据，读写锁保护
+     */
+    private static class IndexData {
+
+        private final Map<Long, IndexedBook> books = new HashMap<>();
+
+        private final Map<Field, Map<String, PostingList>> postings = new EnumMap<>(Field.class);
+
+        /**
+         * 重建期间已被实时修改的图书，加载时跳过，避免用较早读出的数据库数据覆盖
+         */
+        private final Set<Long> pinned = new HashSet<>();
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        IndexData() {
+            for (Field field : Field.values()) {
+                postings.put(field, new HashMap<>());
+            }
+        }
+
+        void load(IndexedBook book) {
+            lock.writeLock().lock();
+            try {
+                if (!pinned.contains(book.id)) {
+                    doRemove(book.id);
+                    doAdd(book);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void upsert(IndexedBook book) {
+            lock.writeLock().lock();
+            try {
+                pinned.add(book.id);
+                doRemove(book.id);
+                doAdd(book);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(long id) {
+            lock.writeLock().lock();
+            try {
+                pinned.add(id);
+                doRemove(id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return books.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void doAdd(IndexedBook book) {
+            books.put(book.id, book);
+            for (Field field : Field.values()) {
+                Map<String, PostingList> fieldPostings = postings.get(field);
+                for (String token : indexTokens(field.valueOf(book))) {
+                    fieldPostings.computeIfAbsent(token, key -> new PostingList()).add(book.id);
+                }
+            }
+        }
+
+        private void doRemove(long id) {
+            IndexedBook old = books.remove(id);
+            if (old == null) {
+                return;
+            }
+            for (Field field : Field.values()) {
+                Map<String, PostingList> fieldPostings = postings.get(field);
+                for (String token : indexTokens(field.valueOf(old))) {
+                    PostingList list = fieldPostings.get(token);
+                    if (list != null) {
+                        list.remove(id);
+                        if (list.isEmpty()) {
+                            fieldPostings.remove(token);
+                        }
+                    }
+                }
+            }
+        }
+
+        SearchResult search(Map<Field, String> terms, Long categoryId, Integer status, long offset, int limit) {
+            lock.readLock().lock();
+            try {
+                // 收集所有查询词的倒排表，任一为空说明没有匹配
+                List<PostingList> lists = new ArrayList<>();
+                for (Map.Entry<Field, String> term : terms.entrySet()) {
+                    Map<String, PostingList> fieldPostings = postings.get(term.getKey());
+                    for (String token : queryTokens(term.getValue())) {
+                        PostingList list = fieldPostings.get(token);
+                        if (list == null) {
+                            return new SearchResult(0, Collections.emptyList());
+                        }
+                        lists.add(list);
+                    }
+                }
+
+                // 从最短的倒排表开始求交集
+                lists.sort(Comparator.comparingInt(PostingList::size));
+                long[] candidates = lists.get(0).toArray();
+                int count = candidates.length;
+                for (int i = 1; i < lists.size() && count > 0; i++) {
+                    PostingList list = lists.get(i);
+                    int kept = 0;
+                    for (int j = 0; j < count; j++) {
+                        if (list.contains(candidates[j])) {
+                            candidates[kept++] = candidates[j];
+                        }
+                    }
+                    count = kept;
+                }
+
+                // 每个关键字只有一个双字且没有分类、状态过滤时，候选都命中，总数即候选数
+                boolean exact = categoryId == null && status == null && terms.values().stream().allMatch(term -> term.length() == MIN_TERM_LENGTH);
+                if (exact && offset >= count) {
+                    return new SearchResult(count, Collections.emptyList());
+                }
+
+                // 校验包含关系、过滤分类和状态并计算相关度，堆顶是已保留结果中排在最后的一个
+                int keep = (int) Math.min(offset + limit, count);
+                PriorityQueue<Hit> heap = new PriorityQueue<>(keep + 1, HIT_ORDER.reversed());
+                long total = 0;
+                for (int i = 0; i < count; i++) {
+                    IndexedBook book = books.get(candidates[i]);
+                    if (categoryId != null && !categoryId.equals(book.categoryId)) {
+                        continue;
+                    }
+                    if (status != null && !status.equals(book.status)) {
+                        continue;
+                    }
+                    int score = score(book, terms);
+                    if (score == 0) {
+                        continue;
+                    }
+                    total++;
+                    if (heap.size() < keep) {
+                        heap.offer(new Hit(book, score));
+                    } else if (keep > 0 && compareHit(score, book, heap.peek()) < 0) {
+                        heap.poll();
+                        heap.offer(new Hit(book, score));
+                    }
+                }
+
+                List<Hit> hits = new ArrayList<>(heap);
+                hits.sort(HIT_ORDER);
+                List<Long> ids = new ArrayList<>();
+                for (long i = offset; i < hits.size(); i++) {
+                    ids.add(hits.get((int) i).book.id);
+                }
+                return new SearchResult(total, ids);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * 相关度：字段与查询词完全相同得4分，以查询词开头得2分，包含得1分；任一字段不包含时返回0
+         */
+        private int score(IndexedBook book, Map<Field, String> terms) {
+            int score = 0;
+            for (Map.Entry<Field, String> term : terms.entrySet()) {
+                String value = term.getKey().valueOf(book);
+                String keyword = term.getValue();
+                if (value.equals(keyword)) {
+                    score += 4;
+                } else if (value.startsWith(keyword)) {
+                    score += 2;
+                } else if (value.contains(keyword)) {
+                    score += 1;
+                } else {
+                    return 0;
+                }
+            }
+            return score;
+        }
+    }
+}
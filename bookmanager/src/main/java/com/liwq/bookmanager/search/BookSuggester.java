@@ -0,0 +1,372 @@
+package com.liwq.bookmanager.search;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.liwq.bookmanager.dto.BookBorrowCountDTO;
+import com.liwq.bookmanager.dto.SuggestionDTO;
+import com.liwq.bookmanager.mapper.BookMapper;
+import com.liwq.bookmanager.mapper.BorrowRecordMapper;
+import com.liwq.bookmanager.model.Book;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 图书搜索补全
+ * 对上架图书的书名、作者、出版社分别建立前缀字典树，按借阅次数返回热度最高的补全建议，查询不访问数据库。
+ * 图书新增、修改、上下架和借阅成功时增量更新；启动时和重建搜索索引时从数据库全量加载。
+ */
+@Slf4j
+@Component
+public class BookSuggester {
+
+    private final BookMapper bookMapper;
+
+    private final BorrowRecordMapper borrowRecordMapper;
+
+    private final boolean enabled;
+
+    private final int topK;
+
+    private final int topCapacity;
+
+    private final int topDepth;
+
+    private final int batchSize;
+
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    private volatile SuggestData current;
+
+    /**
+     * 正在重建的新数据，重建期间的修改同时写入，由当前对象的监视器保护
+     */
+    private SuggestData rebuilding;
+
+    public BookSuggester(BookMapper bookMapper,
+                         BorrowRecordMapper borrowRecordMapper,
+                         @Value("${search.enabled:true}") boolean enabled,
+                         @Value("${search.suggest.top-k:10}") int topK,
+                         @Value("${search.suggest.top-capacity:1000}") int topCapacity,
+                         @Value("${search.suggest.top-depth:6}") int topDepth,
+                         @Value("${search.build-batch-size:5000}") int batchSize) {
+        this.bookMapper = bookMapper;
+        this.borrowRecordMapper = borrowRecordMapper;
+        this.enabled = enabled;
+        this.topK = topK;
+        this.topCapacity = topCapacity;
+        this.topDepth = topDepth;
+        this.batchSize = batchSize;
+        this.current = new SuggestData(topK, topCapacity, topDepth);
+    }
+
+    /**
+     * 应用启动后在后台加载
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("图书搜索补全数据加载失败", e);
+        }
+    }
+
+    /**
+     * 从数据库重新加载上架图书和借阅次数，完成后整体替换
+     *
+     * @return 词条数量
+     */
+    public int rebuild() {
+        if (!enabled) {
+            throw new RuntimeException("图书搜索索引未开启");
+        }
+        if (!rebuildLock.tryLock()) {
+            throw new RuntimeException("搜索补全数据正在重建，请稍后再试");
+        }
+        try {
+            long start = System.currentTimeMillis();
+            SuggestData fresh = new SuggestData(topK, topCapacity, topDepth);
+            synchronized (this) {
+                rebuilding = fresh;
+            }
+            try {
+                Map<Long, Long> borrowCounts = new HashMap<>();
+                for (BookBorrowCountDTO count : borrowRecordMapper.selectBorrowCountsByBook()) {
+                    borrowCounts.put(count.getBookId(), count.getBorrowCount());
+                }
+
+                long lastId = 0;
+                List<Book> books;
+                do {
+                    LambdaQueryWrapper<Book> wrapper = new LambdaQueryWrapper<>();
+                    wrapper.select(Book::getId, Book::getBookName, Book::getAuthor, Book::getPublisher, Book::getStatus)
+                            .gt(Book::getId, lastId)
+                            .orderByAsc(Book::getId)
+                            .last("LIMIT " + batchSize);
+                    books = bookMapper.selectList(wrapper);
+                    for (Book book : books) {
+                        fresh.load(book, borrowCounts.getOrDefault(book.getId(), 0L));
+                    }
+                    if (!books.isEmpty()) {
+                        lastId = books.get(books.size() - 1).getId();
+                    }
+                } while (books.size() == batchSize);
+
+                synchronized (this) {
+                    current = fresh;
+                }
+            } finally {
+                synchronized (this) {
+                    rebuilding = null;
+                }
+            }
+            int size = fresh.size();
+            log.info("图书搜索补全数据加载完成，共{}个词条，耗时{}ms", size, System.currentTimeMillis() - start);
+            return size;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * 图书新增或修改后更新补全词条，下架的图书移除
+     */
+    public synchronized void index(Book book) {
+        if (!enabled) {
+            return;
+        }
+        current.upsert(book);
+        if (rebuilding != null) {
+            rebuilding.upsert(book);
+        }
+    }
+
+    /**
+     * 图书被借阅后增加热度
+     */
+    public synchronized void onBorrowed(Long bookId) {
+        if (!enabled) {
+            return;
+        }
+        current.increase(bookId);
+        if (rebuilding != null) {
+            rebuilding.increase(bookId);
+        }
+    }
+
+    /**
+     * 获取补全建议
+     *
+     * @param field 只补全指定字段（bookName、author、publisher），为空时合并三个字段按热度返回
+     */
+    public List<SuggestionDTO> suggest(String prefix, String field, int limit) {
+        if (!StringUtils.hasText(prefix)) {
+            return new ArrayList<>();
+        }
+        limit = Math.max(1, Math.min(limit, topK));
+        if (StringUtils.hasText(field)) {
+            return current.suggest(prefix, SuggestField.of(field), limit);
+        }
+        return current.suggest(prefix, null, limit);
+    }
+
+    /**
+     * 补全字段
+     */
+    private enum SuggestField {
+        BOOK_NAME("bookName"), AUTHOR("author"), PUBLISHER("publisher");
+
+        private final String name;
+
+        SuggestField(String name) {
+            this.name = name;
+        }
+
+        static SuggestField of(String name) {
+            for (SuggestField field : values()) {
+                if (field.name.equals(name)) {
+                    return field;
+                }
+            }
+            throw new RuntimeException("不支持的补全字段：" + name);
+        }
+
+        String valueOf(BookEntry book) {
+            switch (this) {
+                case BOOK_NAME:
+                    return book.bookName;
+                case AUTHOR:
+                    return book.author;
+                default:
+                    return book.publisher;
+            }
+        }
+    }
+
+    /**
+     * 已加入补全的图书
+     */
+    private static class BookEntry {
+
+        private final String bookName;
+        private final String author;
+        private final String publisher;
+        private long borrowCount;
+
+        BookEntry(Book book, long borrowCount) {
+            this.bookName = book.getBookName();
+            this.author = book.getAuthor();
+            this.publisher = book.getPublisher();
+            this.borrowCount = borrowCount;
+        }
+    }
+
+    /**
+     * 一份完整的补全数据，读写锁保护
+     */
+    private static class SuggestData {
+
+        private final Map<SuggestField, SuggestTrie> tries = new EnumMap<>(SuggestField.class);
+
+        private final Map<Long, BookEntry> books = new HashMap<>();
+
+        /**
+         * 重建期间已被实时修改的图书，加载时跳过
+         */
+        private final Set<Long> pinned = new HashSet<>();
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        SuggestData(int topK, int topCapacity, int topDepth) {
+            for (SuggestField field : SuggestField.values()) {
+                tries.put(field, new SuggestTrie(topK, topCapacity, topDepth));
+            }
+        }
+
+        void load(Book book, long borrowCount) {
+            lock.writeLock().lock();
+            try {
+                if (!pinned.contains(book.getId()) && isOnShelf(book)) {
+                    add(book.getId(), new BookEntry(book, borrowCount));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void upsert(Book book) {
+            lock.writeLock().lock();
+            try {
+                pinned.add(book.getId());
+                BookEntry old = books.remove(book.getId());
+                long borrowCount = old != null ? old.borrowCount : 0;
+                // 先加入新词条再移除旧词条：书名等未变化时词条引用数不会降为0，不会触发删除和重新计算
+                if (isOnShelf(book)) {
+                    add(book.getId(), new BookEntry(book, borrowCount));
+                }
+                if (old != null) {
+                    for (SuggestField field : SuggestField.values()) {
+                        removeTerm(field, field.valueOf(old), borrowCount);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void increase(Long bookId) {
+            lock.writeLock().lock();
+            try {
+                BookEntry book = books.get(bookId);
+                if (book == null) {
+                    return;
+                }
+                book.borrowCount++;
+                for (SuggestField field : SuggestField.values()) {
+                    String text = field.valueOf(book);
+                    if (StringUtils.hasText(text)) {
+                        tries.get(field).increase(text, 1);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        List<SuggestionDTO> suggest(String prefix, SuggestField only, int limit) {
+            lock.readLock().lock();
+            try {
+                List<SuggestionDTO> result = new ArrayList<>();
+                List<SuggestTrie.Term> merged = new ArrayList<>();
+                Map<SuggestTrie.Term, SuggestField> fields = new HashMap<>();
+                for (SuggestField field : SuggestField.values()) {
+                    if (only != null && only != field) {
+                        continue;
+                    }
+                    for (SuggestTrie.Term term : tries.get(field).suggest(prefix, limit)) {
+                        merged.add(term);
+                        fields.put(term, field);
+                    }
+                }
+                merged.sort(SuggestTrie.ORDER);
+                for (SuggestTrie.Term term : merged.subList(0, Math.min(limit, merged.size()))) {
+                    result.add(new SuggestionDTO(term.getText(), fields.get(term).name, term.getScore()));
+                }
+                return result;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                int size = 0;
+                for (SuggestTrie trie : tries.values()) {
+                    size += trie.size();
+                }
+                return size;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void add(Long bookId, BookEntry book) {
+            books.put(bookId, book);
+            for (SuggestField field : SuggestField.values()) {
+                String text = field.valueOf(book);
+                if (StringUtils.hasText(text)) {
+                    tries.get(field).add(text, book.borrowCount);
+                }
+            }
+        }
+
+        private void removeTerm(SuggestField field, String text, long borrowCount) {
+            if (StringUtils.hasText(text)) {
+                tries.get(field).remove(text, borrowCount);
+            }
+        }
+
+        private static boolean isOnShelf(Book book) {
+            return book.getStatus() != null && book.getStatus() == 1;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.liwq.bookmanager.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 前缀补全字典树（非线程安全，由BookSuggester加锁）
+ * 每个词条的热度为包含它的图书借阅次数之和。前几层节点预先保存子树内热度最高的若干词条（多于k个），
+ * 短前缀直接返回；更深的节点子树很小，查询时遍历子树取前k个，避免为每个节点保存列表占用过多内存。
+ * 列表外的词条排序都在列表内词条之后：词条热度下降到列表末尾之后时移出列表，只有列表少于k个时才遍历子树重新计算，
+ * 浅层节点的子树可能覆盖大半馆藏，修改热门图书时不会每次都遍历。
+ */
+class SuggestTrie {
+
+    /**
+     * 词条排序：热度倒序，相同时短词优先，再按字典序
+     */
+    static final Comparator<Term> ORDER = Comparator.comparingLong(Term::getScore).reversed()
+            .thenComparingInt(term -> term.getKey().length())
+            .thenComparing(Term::getKey);
+
+    private final int topK;
+
+    private final int topCapacity;
+
+    private final int topDepth;
+
+    private final Node root = new Node(0, 0);
+
+    private final Map<String, Term> terms = new HashMap<>();
+
+    /**
+     * @param topK        单次补全返回的最大条数
+     * @param topCapacity 每个节点最多预存的词条数（不小于topK），多出的部分作为缓冲，减少重新计算
+     * @param topDepth    预先保存词条的最大节点深度
+     */
+    SuggestTrie(int topK, int topCapacity, int topDepth) {
+        this.topK = topK;
+        this.topCapacity = Math.max(topK, topCapacity);
+        this.topDepth = topDepth;
+    }
+
+    static String normalize(String text) {
+        return text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 增加一本包含该词条的图书
+     */
+    void add(String text, long score) {
+        String key = normalize(text);
+        if (key.isEmpty()) {
+            return;
+        }
+        Term term = terms.get(key);
+        List<Node> path;
+        if (term == null) {
+            term = new Term(key, text.trim());
+            terms.put(key, term);
+            path = createPath(key);
+            path.get(path.size() - 1).addTerminal(term);
+        } else {
+            path = findPath(key);
+        }
+        term.refs++;
+        term.score += score;
+        for (Node node : path) {
+            offer(node, term);
+        }
+    }
+
+    /**
+     * 移除一本包含该词条的图书
+     */
+    void remove(String text, long score) {
+        String key = normalize(text);
+        Term term = terms.get(key);
+        if (term == null) {
+            return;
+        }
+        term.refs--;
+        term.score -= score;
+        List<Node> path = findPath(key);
+        boolean deleted = term.refs <= 0;
+        if (deleted) {
+            terms.remove(key);
+            path.get(path.size() - 1).removeTerminal(term);
+            prune(key, path);
+        }
+        for (Node node : path) {
+            if (node.top == null) {
+                continue;
+            }
+            if (deleted) {
+                if (removeFromTop(node.top, term)) {
+                    refill(node);
+                }
+            } else {
+                demote(node, term);
+            }
+        }
+    }
+
+    /**
+     * 词条热度增加（如图书被借阅）
+     */
+    void increase(String text, long delta) {
+        Term term = terms.get(normalize(text));
+        if (term == null) {
+            return;
+        }
+        term.score += delta;
+        for (Node node : findPath(term.key)) {
+            if (delta < 0) {
+                if (node.top != null) {
+                    demote(node, term);
+                }
+            } else {
+                offer(node, term);
+            }
+        }
+    }
+
+    /**
+     * 返回以prefix开头、热度最高的limit个词条（最多k个）
+     */
+    List<Term> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        if (node == null) {
+            return new ArrayList<>();
+        }
+        List<Term> top = node.top != null ? node.top : collectTop(node, topK);
+        return new ArrayList<>(top.subList(0, Math.min(Math.min(limit, topK), top.size())));
+    }
+
+    int size() {
+        return terms.size();
+    }
+
+    private List<Node> createPath(String key) {
+        List<Node> path = new ArrayList<>(key.length());
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.getOrCreateChild(key.charAt(i), topDepth);
+            path.add(node);
+        }
+        return path;
+    }
+
+    private List<Node> findPath(String key) {
+        List<Node> path = new ArrayList<>(key.length());
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.child(key.charAt(i));
+            path.add(node);
+        }
+        return path;
+    }
+
+    /**
+     * 自下而上删除已无词条的节点
+     */
+    private void prune(String key, List<Node> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node node = path.get(i);
+            if (node.terminal != null || node.childCount > 0) {
+                return;
+            }
+            Node parent = i == 0 ? root : path.get(i - 1);
+            parent.removeChild(key.charAt(i));
+        }
+    }
+
+    /**
+     * 新增词条或词条热度增加
+     */
+    private void offer(Node node, Term term) {
+        if (node.top == null) {
+            return;
+        }
+        List<Term> top = node.top;
+        if (removeFromTop(top, term)) {
+            // 已在列表中，热度增加后只会前移
+            insert(top, term);
+            return;
+        }
+        // 列表不完整时，排在末尾之后的词条留在列表外，不破坏列表外词条都排在后面的约定
+        if (!node.complete && !top.isEmpty() && ORDER.compare(term, top.get(top.size() - 1)) > 0) {
+            return;
+        }
+        insert(top, term);
+        if (top.size() > topCapacity) {
+            top.remove(top.size() - 1);
+            node.complete = false;
+        }
+    }
+
+    /**
+     * 列表中的词条热度下降：仍排在原列表末尾之前时调整位置，否则移出列表
+     */
+    private void demote(Node node, Term term) {
+        List<Term> top = node.top;
+        if (!removeFromTop(top, term)) {
+            return;
+        }
+        if (node.complete || (!top.isEmpty() && ORDER.compare(term, top.get(top.size() - 1)) < 0)) {
+            insert(top, term);
+        } else {
+            refill(node);
+        }
+    }
+
+    /**
+     * 列表不完整且少于k个时遍历子树重新计算
+     */
+    private void refill(Node node) {
+        if (node.complete || node.top.size() >= topK) {
+            return;
+        }
+        List<Term> top = collectTop(node, topCapacity + 1);
+        node.complete = top.size() <= topCapacity;
+        if (!node.complete) {
+            top.remove(top.size() - 1);
+        }
+        node.top = top;
+    }
+
+    private static void insert(List<Term> top, Term term) {
+        int index = Collections.binarySearch(top, term, ORDER);
+        top.add(index < 0 ? -index - 1 : index, term);
+    }
+
+    /**
+     * 按引用从列表中移除词条（词条热度已变化，不能按排序二分查找）
+     */
+    private static boolean removeFromTop(List<Term> top, Term term) {
+        for (int i = 0; i < top.size(); i++) {
+            if (top.get(i) == term) {
+                top.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 遍历子树取热度最高的limit个词条
+     */
+    private List<Term> collectTop(Node node, int limit) {
+        PriorityQueue<Term> heap = new PriorityQueue<>(ORDER.reversed());
+        List<Node> stack = new ArrayList<>();
+        stack.add(node);
+        while (!stack.isEmpty()) {
+            Node current = stack.remove(stack.size() - 1);
+            if (current.terminal != null) {
+                heap.offer(current.terminal);
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            }
+            for (int i = 0; i < current.childCount; i++) {
+                stack.add(current.children[i]);
+            }
+        }
+        List<Term> top = new ArrayList<>(heap);
+        top.sort(ORDER);
+        return top;
+    }
+
+    /**
+     * 补全词条
+     */
+    static class Term {
+
+        private final String key;
+
+        private final String text;
+
+        private long score;
+
+        private int refs;
+
+        Term(String key, String text) {
+            this.key = key;
+            this.text = text;
+        }
+
+        String getKey() {
+            return key;
+        }
+
+        String getText() {
+            return text;
+        }
+
+        long getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * 字典树节点，子节点按字符升序存放在数组中
+     */
+    private static class Node {
+
+        private final int depth;
+
+        private char[] keys = new char[0];
+
+        private Node[] children = new Node[0];
+
+        private int childCount;
+
+        private Term terminal;
+
+        private List<Term> top;
+
+        /**
+         * top是否包含子树内的全部词条
+         */
+        private boolean complete = true;
+
+        Node(int depth, int topDepth) {
+            this.depth = depth;
+            // 根节点对应空前缀，不提供补全
+            if (depth > 0 && depth <= topDepth) {
+                top = new ArrayList<>();
+            }
+        }
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(keys, 0, childCount, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node getOrCreateChild(char c, int topDepth) {
+            int index = Arrays.binarySearch(keys, 0, childCount, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            index = -index - 1;
+            if (childCount == keys.length) {
+                int capacity = Math.max(2, childCount * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(keys, index, keys, index + 1, childCount - index);
+            System.arraycopy(children, index, children, index + 1, childCount - index);
+            Node child = new Node(depth + 1, topDepth);
+            keys[index] = c;
+            children[index] = child;
+            childCount++;
+            return child;
+        }
+
+        void removeChild(char c) {
+            int index = Arrays.binarySearch(keys, 0, childCount, c);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(keys, index + 1, keys, index, childCount - index - 1);
+            System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+            childCount--;
+            children[childCount] = null;
+        }
+
+        void addTerminal(Term term) {
+            terminal = term;
+        }
+
+        void removeTerminal(Term term) {
+            if (terminal == term) {
+                terminal = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.liwq.bookmanager.service;
+
+import com.liwq.bookmanager.dto.ImportJobDTO;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * 图书批量导入服务接口
+ */
+public interface BookImportService {
+
+    /**
+     * 提交导入任务，文件在后台逐行解析并分批插入
+     *
+     * @param format 文件格式（csv或jsonl），为空时按文件扩展名判断
+     */
+    ImportJobDTO startImport(MultipartFile file, String format);
+
+    /**
+     * 查询导入任务进度
+     */
+    ImportJobDTO getJob(String jobId);
+}
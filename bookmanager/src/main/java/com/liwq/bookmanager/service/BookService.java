@@ -2,7 +2,11 @@ package com.liwq.bookmanager.service;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.liwq.bookmanager.dto.BookDTO;
+import com.liwq.bookmanager.dto.BookDeleteResultDTO;
 import com.liwq.bookmanager.dto.BookDetailDTO;
+import com.liwq.bookmanager.dto.CacheStatisticsDTO;
+import com.liwq.bookmanager.dto.HotStockStatisticsDTO;
+import com.liwq.bookmanager.dto.SuggestionDTO;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
@@ -23,9 +27,9 @@ public interface BookService {
     void deleteBook(Long id);
 
     /**
-     * 批量删除图书
+     * 批量删除图书，返回每本图书的处理结果
      */
-    void deleteBatchBooks(List<Long> ids);
+    List<BookDeleteResultDTO> deleteBatchBooks(List<Long> ids);
 
     /**
      * 更新图书
@@ -39,9 +43,12 @@ public interface BookService {
 
     /**
      * 分页查询图书列表
+     *
+     * @param searchCount 是否查询总数，"加载更多"类场景可传false跳过COUNT查询
      */
     Page<BookDetailDTO> getBookList(int pageNum, int pageSize, String bookName,
-                                     String author, String publisher, Long categoryId, Integer status);
+                                     String author, String publisher, Long categoryId, Integer status,
+                                     boolean searchCount);
 
     /**
      * 更新图书状态
@@ -62,4 +69,38 @@ public interface BookService {
      * 减少可借数量（借阅时调用）
      */
     void decreaseAvailableCount(Long bookId);
+
+    /**
+     * 开启热门图书库存闸门
+     */
+    void enableHotStock(Long bookId);
+
+    /**
+     * 关闭热门图书库存闸门
+     */
+    void disableHotStock(Long bookId);
+
+    /**
+     * 获取热门图书库存闸门统计
+     */
+    List<HotStockStatisticsDTO> getHotStockStatistics();
+
+    /**
+     * 从数据库重建图书搜索索引（管理员）
+     *
+     * @return 索引中的图书数量
+     */
+    int rebuildSearchIndex();
+
+    /**
+     * 获取图书详情缓存统计（管理员）
+     */
+    CacheStatisticsDTO getDetailCacheStatistics();
+
+    /**
+     * 获取书名、作者、出版社的前缀补全建议，按借阅热度排序
+     *
+     * @param field 只补全指定字段（bookName、author、publisher），为空时不限
+     */
+    List<SuggestionDTO> suggest(String prefix, String field, int limit);
 }
@@ -3,6 +3,12 @@ package com.liwq.bookmanager.service;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.liwq.bookmanager.dto.BorrowDetailDTO;
 import com.liwq.bookmanager.dto.BorrowStatisticsDTO;
+import com.liwq.bookmanager.dto.CursorPageDTO;
+import com.liwq.bookmanager.dto.LockContentionDTO;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.List;
 
 /**
  * 借阅服务接口
@@ -34,6 +40,26 @@ public interface BorrowService {
      */
     Page<BorrowDetailDTO> getAllBorrowRecords(int pageNum, int pageSize, Long userId, Long bookId, String status);
 
+    /**
+     * 按游标获取我的借阅记录
+     */
+    CursorPageDTO<BorrowDetailDTO> getMyBorrowRecordsByCursor(String cursor, int pageSize, String status);
+
+    /**
+     * 按游标获取所有借阅记录（管理员）
+     */
+    CursorPageDTO<BorrowDetailDTO> getAllBorrowRecordsByCursor(String cursor, int pageSize, Long userId, Long bookId, String status);
+
+    /**
+     * 导出借阅记录（管理员），边查询边写入输出流
+     *
+     * @param format    导出格式：csv或jsonl，由调用方在写响应头前校验
+     * @param startDate 借阅日期起（含），为空时不限
+     * @param endDate   借阅日期止（含），为空时不限
+     */
+    void exportBorrowRecords(Long userId, Long bookId, String status, LocalDate startDate, LocalDate endDate,
+                             String format, OutputStream out);
+
     /**
      * 获取借阅详情
      */
@@ -44,6 +70,16 @@ public interface BorrowService {
      */
     Page<BorrowDetailDTO> getOverdueRecords(int pageNum, int pageSize);
 
+    /**
+     * 按游标获取逾期记录（管理员）
+     */
+    CursorPageDTO<BorrowDetailDTO> getOverdueRecordsByCursor(String cursor, int pageSize);
+
+    /**
+     * 获取乐观锁冲突统计（管理员）
+     */
+    List<LockContentionDTO> getLockContentionStatistics();
+
     /**
      * 获取借阅统计数据（管理员）
      */
@@ -1,8 +1,10 @@
 package com.liwq.bookmanager.service;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.liwq.bookmanager.dto.CursorPageDTO;
 import com.liwq.bookmanager.dto.ReservationDTO;
 import com.liwq.bookmanager.dto.ReservationDetailDTO;
+import com.liwq.bookmanager.dto.ReservationStatisticsDTO;
 
 /**
  * 预约服务接口
@@ -21,14 +23,34 @@ public interface ReservationService {
 
     /**
      * 获取我的预约记录
+     *
+     * @param searchCount 是否查询总数，通知等只取前几条的场景可传false跳过COUNT查询
      */
-    Page<ReservationDetailDTO> getMyReservations(Long userId, int pageNum, int pageSize, String status);
+    Page<ReservationDetailDTO> getMyReservations(Long userId, int pageNum, int pageSize, String status,
+                                                 boolean searchCount);
 
     /**
      * 获取所有预约记录（管理员）
      */
     Page<ReservationDetailDTO> getAllReservations(int pageNum, int pageSize, Long userId, Long bookId, String status);
 
+    /**
+     * 按游标获取我的预约记录
+     */
+    CursorPageDTO<ReservationDetailDTO> getMyReservationsByCursor(Long userId, String cursor, int pageSize, String status);
+
+    /**
+     * 按游标获取所有预约记录（管理员）
+     */
+    CursorPageDTO<ReservationDetailDTO> getAllReservationsByCursor(String cursor, int pageSize, Long userId, Long bookId, String status);
+
+    /**
+     * 获取预约统计（管理员）
+     *
+     * @param days 趋势统计的天数（含今天）
+     */
+    ReservationStatisticsDTO getReservationStatistics(int days);
+
     /**
      * 获取预约详情
      */
@@ -48,4 +70,16 @@ public interface ReservationService {
      * 图书归还后处理预约通知（由借阅服务调用）
      */
     void handleBookReturnNotification(Long bookId);
+
+    /**
+     * 用户借阅图书后清除该图书到书通知的保留期限（由借阅服务调用）
+     */
+    void onBookBorrowed(Long userId, Long bookId);
+
+    /**
+     * 处理保留期已过仍未借阅的到书通知，标记为已过期并通知排队的下一位
+     *
+     * @return 本次过期的预约数量
+     */
+    int expireHolds();
 }
@@ -2,6 +2,9 @@ package com.liwq.bookmanager.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.liwq.bookmanager.cache.BookDetailCache;
+import com.liwq.bookmanager.cache.CatalogVersion;
+import com.liwq.bookmanager.cache.CategoryCache;
 import com.liwq.bookmanager.dto.CategoryDTO;
 import com.liwq.bookmanager.mapper.BookCategoryMapper;
 import com.liwq.bookmanager.mapper.BookMapper;
@@ -22,10 +25,18 @@ public class BookCategoryServiceImpl implements BookCategoryService {
 
     private final BookCategoryMapper bookCategoryMapper;
     private final BookMapper bookMapper;
+    private final CategoryCache categoryCache;
+    private final BookDetailCache bookDetailCache;
+    private final CatalogVersion catalogVersion;
 
-    public BookCategoryServiceImpl(BookCategoryMapper bookCategoryMapper, BookMapper bookMapper) {
+    public BookCategoryServiceImpl(BookCategoryMapper bookCategoryMapper, BookMapper bookMapper,
+                                   CategoryCache categoryCache, BookDetailCache bookDetailCache,
+                                   CatalogVersion catalogVersion) {
         this.bookCategoryMapper = bookCategoryMapper;
         this.bookMapper = bookMapper;
+        this.categoryCache = categoryCache;
+        this.bookDetailCache = bookDetailCache;
+        this.catalogVersion = catalogVersion;
     }
 
     @Override
@@ -41,6 +52,8 @@ public class BookCategoryServiceImpl implements BookCategoryService {
         BookCategory category = new BookCategory();
         BeanUtils.copyProperties(categoryDTO, category);
         bookCategoryMapper.insert(category);
+        categoryCache.invalidate();
+        catalogVersion.onCategoryChanged();
     }
 
     @Override
@@ -60,6 +73,8 @@ public class BookCategoryServiceImpl implements BookCategoryService {
         }
 
         bookCategoryMapper.deleteById(id);
+        categoryCache.invalidate();
+        catalogVersion.onCategoryChanged();
     }
 
     @Override
@@ -82,11 +97,15 @@ public class BookCategoryServiceImpl implements BookCategoryService {
         BeanUtils.copyProperties(categoryDTO, category);
         category.setId(id);
         bookCategoryMapper.updateById(category);
+        categoryCache.invalidate();
+        catalogVersion.onCategoryChanged();
+        // 图书详情中包含分类名称
+        bookDetailCache.invalidateAll();
     }
 
     @Override
     public BookCategory getCategoryById(Long id) {
-        BookCategory category = bookCategoryMapper.selectById(id);
+        BookCategory category = categoryCache.get(id);
         if (category == null) {
             throw new RuntimeException("分类不存在");
         }
@@ -110,9 +129,6 @@ public class BookCategoryServiceImpl implements BookCategoryService {
 
     @Override
     public List<BookCategory> getAllCategories() {
-        LambdaQueryWrapper<BookCategory> wrapper = new LambdaQueryWrapper<>();
-        wrapper.orderByAsc(BookCategory::getSortOrder)
-                .orderByDesc(BookCategory::getCreateTime);
-        return bookCategoryMapper.selectList(wrapper);
+        return categoryCache.getAll();
     }
 }
@@ -0,0 +1,565 @@
+package com.liwq.bookmanager.service.impl;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.liwq.bookmanager.cache.CatalogVersion;
+import com.liwq.bookmanager.cache.CategoryCache;
+import com.liwq.bookmanager.dto.BookDTO;
+import com.liwq.bookmanager.dto.ImportErrorDTO;
+import com.liwq.bookmanager.dto.ImportJobDTO;
+import com.liwq.bookmanager.mapper.BookMapper;
+import com.liwq.bookmanager.model.Book;
+import com.liwq.bookmanager.model.BookCategory;
+import com.liwq.bookmanager.search.BookSearchIndex;
+import com.liwq.bookmanager.search.BookSuggester;
+import com.liwq.bookmanager.service.BookImportService;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 图书批量导入服务实现
+ * 上传文件先落盘再交给后台线程逐行解析，分类和ISBN预先整体加载到内存校验，
+ * 通过BATCH执行器按批插入并逐批提交；某一批插入失败时回滚该批并逐条重试，定位出错的行。
+ * 同一时间只允许一个导入任务执行，任务进度保存在内存中。
+ */
+@Slf4j
+@Service
+public class BookImportServiceImpl implements BookImportService {
+
+    private static final String STATUS_RUNNING = "running";
+    private static final String STATUS_COMPLETED = "completed";
+    private static final String STATUS_FAILED = "failed";
+
+    /**
+     * CSV表头可用的列名，与BookDTO字段一致
+     */
+    private static final Set<String> CSV_COLUMNS = Set.of("bookName", "author", "publisher", "isbn", "categoryId",
+            "totalCount", "availableCount", "price", "publishDate", "coverImage", "description", "status");
+
+    private final SqlSessionFactory sqlSessionFactory;
+    private final BookMapper bookMapper;
+    private final CategoryCache categoryCache;
+    private final CatalogVersion catalogVersion;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookSuggester bookSuggester;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolTaskExecutor taskExecutor;
+
+    /**
+     * 每批插入条数，每批单独提交
+     */
+    @Value("${book-import.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * 每个任务最多记录的失败行数
+     */
+    @Value("${book-import.max-errors:1000}")
+    private int maxErrors;
+
+    /**
+     * 保留的任务数，超出时移除最早结束的任务
+     */
+    @Value("${book-import.history-size:20}")
+    private int historySize;
+
+    private final Map<String, ImportJob> jobs = new LinkedHashMap<>();
+
+    public BookImportServiceImpl(SqlSessionFactory sqlSessionFactory, BookMapper bookMapper,
+                                 CategoryCache categoryCache, CatalogVersion catalogVersion,
+                                 BookSearchIndex bookSearchIndex, BookSuggester bookSuggester,
+                                 Validator validator, ObjectMapper objectMapper,
+                                 ThreadPoolTaskExecutor taskExecutor) {
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.bookMapper = bookMapper;
+        this.categoryCache = categoryCache;
+        this.catalogVersion = catalogVersion;
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookSuggester = bookSuggester;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.taskExecutor = taskExecutor;
+    }
+
+    @Override
+    public ImportJobDTO startImport(MultipartFile file, String format) {
+        if (file.isEmpty()) {
+            throw new RuntimeException("上传文件不能为空");
+        }
+        boolean csv = isCsv(file.getOriginalFilename(), format);
+
+        // 请求结束后上传的临时文件会被清理，先复制一份供后台任务读取
+        Path path;
+        try {
+            path = Files.createTempFile("book-import-", csv ? ".csv" : ".jsonl");
+            file.transferTo(path);
+        } catch (IOException e) {
+            throw new RuntimeException("文件上传失败：" + e.getMessage());
+        }
+
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), file.getOriginalFilename());
+        synchronized (jobs) {
+            for (ImportJob existing : jobs.values()) {
+                if (STATUS_RUNNING.equals(existing.status)) {
+                    deleteQuietly(path);
+                    throw new RuntimeException("已有图书导入任务正在执行，请稍后再试");
+                }
+            }
+            jobs.put(job.jobId, job);
+            trimHistory();
+        }
+
+        try {
+            taskExecutor.execute(() -> runImport(job, path, csv));
+        } catch (RuntimeException e) {
+            job.fail("导入任务提交失败：" + e.getMessage());
+            deleteQuietly(path);
+            throw new RuntimeException("导入任务提交失败，请稍后再试");
+        }
+        return job.snapshot();
+    }
+
+    @Override
+    public ImportJobDTO getJob(String jobId) {
+        ImportJob job;
+        synchronized (jobs) {
+            job = jobs.get(jobId);
+        }
+        if (job == null) {
+            throw new RuntimeException("导入任务不存在");
+        }
+        return job.snapshot();
+    }
+
+    private void runImport(ImportJob job, Path path, boolean csv) {
+        long start = System.currentTimeMillis();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            Set<Long> categoryIds = new HashSet<>();
+            for (BookCategory category : categoryCache.getAll()) {
+                categoryIds.add(category.getId());
+            }
+            Set<String> isbns = new HashSet<>(bookMapper.selectAllIsbns());
+
+            Iterator<Row> rows = csv ? new CsvRows(reader) : new JsonLineRows(reader);
+            List<Row> chunk = new ArrayList<>(batchSize);
+            while (rows.hasNext()) {
+                Row row = rows.next();
+                job.read();
+                String error = row.error != null ? row.error : validate(row, categoryIds, isbns);
+                if (error != null) {
+                    job.reject(row.number, error, maxErrors);
+                    continue;
+                }
+                chunk.add(row);
+                if (chunk.size() >= batchSize) {
+                    insertChunk(job, chunk);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                insertChunk(job, chunk);
+            }
+            job.complete();
+            log.info("图书导入完成：{}，成功{}条，失败{}条，耗时{}ms", job.fileName, job.successCount,
+                    job.failedCount, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("图书导入失败：{}", job.fileName, e);
+            job.fail(e.getMessage());
+        } finally {
+            deleteQuietly(path);
+        }
+    }
+
+    /**
+     * 校验一行数据，通过时生成待插入的图书，失败时返回原因
+     */
+    private String validate(Row row, Set<Long> categoryIds, Set<String> isbns) {
+        BookDTO dto = row.dto;
+        Set<ConstraintViolation<BookDTO>> violations = validator.validate(dto);
+        if (!violations.isEmpty()) {
+            return violations.iterator().next().getMessage();
+        }
+        if (!categoryIds.contains(dto.getCategoryId())) {
+            return "图书分类不存在";
+        }
+        if (dto.getAvailableCount() > dto.getTotalCount()) {
+            return "可借数量不能大于馆藏总数";
+        }
+        if (StringUtils.hasText(dto.getIsbn()) && !isbns.add(dto.getIsbn())) {
+            return "ISBN已存在";
+        }
+
+        Book book = new Book();
+        BeanUtils.copyProperties(dto, book);
+        // 与单条新增一致，未填写的字段使用表的默认值
+        if (book.getPrice() == null) {
+            book.setPrice(BigDecimal.ZERO);
+        }
+        if (book.getStatus() == null) {
+            book.setStatus(1);
+        }
+        row.book = book;
+        return null;
+    }
+
+    /**
+     * 批量插入一批图书并提交，失败时逐条重试
+     */
+    private void insertChunk(ImportJob job, List<Row> chunk) {
+        List<Row> inserted = new ArrayList<>(chunk.size());
+        try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH, false)) {
+            BookMapper mapper = session.getMapper(BookMapper.class);
+            try {
+                for (Row row : chunk) {
+                    mapper.insertForImport(row.book);
+                }
+                session.flushStatements();
+                session.commit();
+                inserted.addAll(chunk);
+            } catch (Exception e) {
+                session.rollback();
+                log.warn("图书导入批量插入失败，逐条重试：{}", e.getMessage());
+                for (Row row : chunk) {
+                    row.book.setId(null);
+                    try {
+                        mapper.insertForImport(row.book);
+                        session.flushStatements();
+                        session.commit();
+                        inserted.add(row);
+                    } catch (Exception rowError) {
+                        session.rollback();
+                        job.reject(row.number, "写入数据库失败：" + rootMessage(rowError), maxErrors);
+                    }
+                }
+            }
+        }
+
+        for (Row row : inserted) {
+            bookSearchIndex.index(row.book);
+            bookSuggester.index(row.book);
+        }
+        if (!inserted.isEmpty()) {
+            catalogVersion.onBookChanged();
+        }
+        job.succeed(inserted.size());
+    }
+
+    private boolean isCsv(String fileName, String format) {
+        String type = StringUtils.hasText(format) ? format : StringUtils.getFilenameExtension(fileName);
+        if (type != null) {
+            type = type.toLowerCase(Locale.ROOT);
+            if ("csv".equals(type)) {
+                return true;
+            }
+            if ("jsonl".equals(type) || "ndjson".equals(type) || "json".equals(type)) {
+                return false;
+            }
+        }
+        throw new RuntimeException("只支持CSV和JSON Lines格式");
+    }
+
+    /**
+     * 移除最早结束的任务，只保留最近的若干个
+     */
+    private void trimHistory() {
+        Iterator<ImportJob> iterator = jobs.values().iterator();
+        int removable = jobs.size() - historySize;
+        while (removable > 0 && iterator.hasNext()) {
+            if (!STATUS_RUNNING.equals(iterator.next().status)) {
+                iterator.remove();
+                removable--;
+            }
+        }
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除导入临时文件失败：{}", path);
+        }
+    }
+
+    /**
+     * 读取到的一行数据，解析失败时error不为空
+     */
+    private static class Row {
+
+        private final long number;
+        private final BookDTO dto;
+        private final String error;
+        private Book book;
+
+        Row(long number, BookDTO dto, String error) {
+            this.number = number;
+            this.dto = dto;
+            this.error = error;
+        }
+    }
+
+    /**
+     * 按行读取JSON Lines，每个非空行是一本图书
+     */
+    private class JsonLineRows implements Iterator<Row> {
+
+        private final BufferedReader reader;
+        private final ObjectReader jsonReader = objectMapper.readerFor(BookDTO.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        private long number;
+        private String line;
+
+        JsonLineRows(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (line == null) {
+                    String next = reader.readLine();
+                    if (next == null) {
+                        return false;
+                    }
+                    number++;
+                    if (number == 1) {
+                        next = stripBom(next);
+                    }
+                    if (StringUtils.hasText(next)) {
+                        line = next;
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                throw new RuntimeException("读取导入文件失败：" + e.getMessage());
+            }
+        }
+
+        @Override
+        public Row next() {
+            hasNext();
+            String current = line;
+            line = null;
+            try {
+                return new Row(number, jsonReader.readValue(current), null);
+            } catch (IOException e) {
+                return new Row(number, null, "数据格式错误");
+            }
+        }
+    }
+
+    /**
+     * 按记录读取CSV（RFC 4180），首行为表头，列名与图书字段一致，引号内的字段可以包含逗号和换行
+     */
+    private class CsvRows implements Iterator<Row> {
+
+        private final BufferedReader reader;
+        private final List<String> header;
+        private long number;
+        private List<String> record;
+
+        CsvRows(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            List<String> columns = readRecord();
+            if (columns == null) {
+                throw new RuntimeException("导入文件为空");
+            }
+            columns.set(0, stripBom(columns.get(0)));
+            this.header = new ArrayList<>(columns.size());
+            for (String column : columns) {
+                // 不认识的列忽略
+                String name = column.trim();
+                header.add(CSV_COLUMNS.contains(name) ? name : null);
+            }
+            if (!header.contains("bookName")) {
+                throw new RuntimeException("CSV表头缺少bookName列");
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (record == null) {
+                    List<String> next = readRecord();
+                    if (next == null) {
+                        return false;
+                    }
+                    number++;
+                    if (next.size() > 1 || StringUtils.hasText(next.get(0))) {
+                        record = next;
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                throw new RuntimeException("读取导入文件失败：" + e.getMessage());
+            }
+        }
+
+        @Override
+        public Row next() {
+            hasNext();
+            List<String> current = record;
+            record = null;
+            if (current.size() > header.size()) {
+                return new Row(number, null, "列数超过表头");
+            }
+            Map<String, String> values = new HashMap<>();
+            for (int i = 0; i < current.size(); i++) {
+                String column = header.get(i);
+                if (column != null && StringUtils.hasText(current.get(i))) {
+                    values.put(column, current.get(i).trim());
+                }
+            }
+            try {
+                return new Row(number, objectMapper.convertValue(values, BookDTO.class), null);
+            } catch (IllegalArgumentException e) {
+                return new Row(number, null, "数据格式错误");
+            }
+        }
+
+        /**
+         * 读取一条记录，文件结束时返回null
+         */
+        private List<String> readRecord() throws IOException {
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (c != -1) {
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        int next = reader.read();
+                        if (next == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            reader.reset();
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = reader.read();
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    private static String stripBom(String text) {
+        return text.startsWith("\uFEFF") ? text.substring(1) : text;
+    }
+
+    /**
+     * 导入任务进度，由导入线程更新、查询线程读取快照
+     */
+    private static class ImportJob {
+
+        private final String jobId;
+        private final String fileName;
+        private final LocalDateTime startTime = LocalDateTime.now();
+        private final List<ImportErrorDTO> errors = new ArrayList<>();
+        private volatile String status = STATUS_RUNNING;
+        private long totalRows;
+        private long successCount;
+        private long failedCount;
+        private String message;
+        private LocalDateTime endTime;
+
+        ImportJob(String jobId, String fileName) {
+            this.jobId = jobId;
+            this.fileName = fileName;
+        }
+
+        synchronized void read() {
+            totalRows++;
+        }
+
+        synchronized void succeed(int count) {
+            successCount += count;
+        }
+
+        synchronized void reject(long row, String error, int maxErrors) {
+            failedCount++;
+            if (errors.size() < maxErrors) {
+                errors.add(new ImportErrorDTO(row, error));
+            }
+        }
+
+        synchronized void complete() {
+            endTime = LocalDateTime.now();
+            status = STATUS_COMPLETED;
+        }
+
+        synchronized void fail(String reason) {
+            message = reason;
+            endTime = LocalDateTime.now();
+            status = STATUS_FAILED;
+        }
+
+        synchronized ImportJobDTO snapshot() {
+            ImportJobDTO dto = new ImportJobDTO();
+            dto.setJobId(jobId);
+            dto.setFileName(fileName);
+            dto.setStatus(status);
+            dto.setTotalRows(totalRows);
+            dto.setSuccessCount(successCount);
+            dto.setFailedCount(failedCount);
+            dto.setErrors(new ArrayList<>(errors));
+            dto.setMessage(message);
+            dto.setStartTime(startTime);
+            dto.setEndTime(endTime);
+            return dto;
+        }
+    }
+}
@@ -2,16 +2,29 @@ package com.liwq.bookmanager.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.liwq.bookmanager.cache.BookDetailCache;
+import com.liwq.bookmanager.cache.CatalogVersion;
+import com.liwq.bookmanager.cache.CategoryCache;
+import com.liwq.bookmanager.cache.HotBookStockGate;
 import com.liwq.bookmanager.dto.BookDTO;
+import com.liwq.bookmanager.dto.BookDeleteResultDTO;
 import com.liwq.bookmanager.dto.BookDetailDTO;
-import com.liwq.bookmanager.mapper.BookCategoryMapper;
+import com.liwq.bookmanager.dto.CacheStatisticsDTO;
+import com.liwq.bookmanager.dto.HotStockStatisticsDTO;
+import com.liwq.bookmanager.dto.SuggestionDTO;
+import com.liwq.bookmanager.exception.ConcurrentUpdateException;
 import com.liwq.bookmanager.mapper.BookMapper;
+import com.liwq.bookmanager.mapper.BorrowRecordMapper;
 import com.liwq.bookmanager.model.Book;
-import com.liwq.bookmanager.model.BookCategory;
+import com.liwq.bookmanager.search.BookSearchIndex;
+import com.liwq.bookmanager.search.BookSuggester;
 import com.liwq.bookmanager.service.BookService;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -21,8 +34,16 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * 图书服务实现
@@ -31,21 +52,47 @@ import java.util.UUID;
 public class BookServiceImpl implements BookService {
 
     private final BookMapper bookMapper;
-    private final BookCategoryMapper bookCategoryMapper;
+    private final BorrowRecordMapper borrowRecordMapper;
+    private final CategoryCache categoryCache;
+    private final HotBookStockGate hotBookStockGate;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookSuggester bookSuggester;
+    private final BookDetailCache bookDetailCache;
+    private final CatalogVersion catalogVersion;
+    private final TransactionTemplate transactionTemplate;
+
+    // 批量删除时每条语句处理的图书数
+    private static final int DELETE_CHUNK_SIZE = 500;
 
     @Value("${file.upload.path:uploads/covers}")
     private String uploadPath;
 
-    public BookServiceImpl(BookMapper bookMapper, BookCategoryMapper bookCategoryMapper) {
+    /**
+     * 单页最大条数，与分页插件保持一致
+     */
+    @Value("${pagination.max-limit:100}")
+    private int maxPageSize;
+
+    public BookServiceImpl(BookMapper bookMapper, BorrowRecordMapper borrowRecordMapper,
+                           CategoryCache categoryCache, HotBookStockGate hotBookStockGate,
+                           BookSearchIndex bookSearchIndex, BookSuggester bookSuggester,
+                           BookDetailCache bookDetailCache, CatalogVersion catalogVersion,
+                           TransactionTemplate transactionTemplate) {
         this.bookMapper = bookMapper;
-        this.bookCategoryMapper = bookCategoryMapper;
+        this.borrowRecordMapper = borrowRecordMapper;
+        this.categoryCache = categoryCache;
+        this.hotBookStockGate = hotBookStockGate;
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookSuggester = bookSuggester;
+        this.bookDetailCache = bookDetailCache;
+        this.catalogVersion = catalogVersion;
+        this.transactionTemplate = transactionTemplate;
     }
 
     @Override
     public void addBook(BookDTO bookDTO) {
         // 验证分类是否存在
-        BookCategory category = bookCategoryMapper.selectById(bookDTO.getCategoryId());
-        if (category == null) {
+        if (categoryCache.get(bookDTO.getCategoryId()) == null) {
             throw new RuntimeException("图书分类不存在");
         }
 
@@ -66,36 +113,76 @@ public class BookServiceImpl implements BookService {
 
         Book book = new Book();
         BeanUtils.copyProperties(bookDTO, book);
+        // 新增图书使用数据库默认版本号
+        book.setVersion(null);
         bookMapper.insert(book);
+        onBookChanged(book);
     }
 
     @Override
     public void deleteBook(Long id) {
-        // 检查图书是否存在
-        Book book = bookMapper.selectById(id);
-        if (book == null) {
-            throw new RuntimeException("图书不存在");
+        BookDeleteResultDTO result = deleteBatchBooks(List.of(id)).get(0);
+        if (!result.getSuccess()) {
+            throw new RuntimeException(result.getMessage());
         }
+    }
 
-        // TODO: 检查是否有未归还的借阅记录
-        // 这部分需要在借阅模块开发后实现
-        // LambdaQueryWrapper<BorrowRecord> wrapper = new LambdaQueryWrapper<>();
-        // wrapper.eq(BorrowRecord::getBookId, id)
-        //        .eq(BorrowRecord::getReturnStatus, 0);
-        // Long count = borrowRecordMapper.selectCount(wrapper);
-        // if (count > 0) {
-        //     throw new RuntimeException("该图书存在未归还的借阅记录，无法删除");
-        // }
+    /**
+     * 按批软删除（下架）图书：每批在单独的事务中提交，大批量删除不会长时间持有前面各批的行锁；
+     * 某一批失败时已提交的批次保持下架，异常向上抛出。
+     * 每批一次查询图书、一条带未归还校验的UPDATE语句，只有未能下架的图书才再查询一次判断原因；
+     * 不存在或有未归还借阅记录的图书跳过并返回原因
+     */
+    @Override
+    public List<BookDeleteResultDTO> deleteBatchBooks(List<Long> ids) {
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        Map<Long, String> failures = new HashMap<>();
+        for (int from = 0; from < distinctIds.size(); from += DELETE_CHUNK_SIZE) {
+            List<Long> chunk = distinctIds.subList(from, Math.min(from + DELETE_CHUNK_SIZE, distinctIds.size()));
+            transactionTemplate.executeWithoutResult(status -> deleteChunk(chunk, failures));
+        }
 
-        // 软删除：将状态设置为下架
-        book.setStatus(0);
-        bookMapper.updateById(book);
+        List<BookDeleteResultDTO> results = new ArrayList<>(distinctIds.size());
+        for (Long id : distinctIds) {
+            String failure = failures.get(id);
+            results.add(new BookDeleteResultDTO(id, failure == null, failure));
+        }
+        return results;
     }
 
-    @Override
-    public void deleteBatchBooks(List<Long> ids) {
-        for (Long id : ids) {
-            deleteBook(id);
+    /**
+     * 下架一批图书，失败原因写入failures
+     */
+    private void deleteChunk(List<Long> chunk, Map<Long, String> failures) {
+        Map<Long, Book> books = bookMapper.selectBatchIds(chunk).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+
+        List<Long> candidateIds = new ArrayList<>();
+        for (Long id : chunk) {
+            Book book = books.get(id);
+            if (book == null) {
+                failures.put(id, "图书不存在");
+            } else if (book.getStatus() == null || book.getStatus() != 0) {
+                candidateIds.add(id);
+            }
+        }
+        if (candidateIds.isEmpty()) {
+            return;
+        }
+
+        // 软删除：将状态设置为下架，未归还校验在同一条语句中完成
+        Set<Long> unreturned = Collections.emptySet();
+        if (bookMapper.delistIfNoUnreturned(candidateIds) < candidateIds.size()) {
+            unreturned = new HashSet<>(borrowRecordMapper.selectUnreturnedBookIds(candidateIds));
+        }
+        for (Long id : candidateIds) {
+            if (unreturned.contains(id)) {
+                failures.put(id, "该图书存在未归还的借阅记录，无法删除");
+                continue;
+            }
+            Book book = books.get(id);
+            book.setStatus(0);
+            onBookChanged(book);
         }
     }
 
@@ -108,8 +195,7 @@ public class BookServiceImpl implements BookService {
         }
 
         // 验证分类是否存在
-        BookCategory category = bookCategoryMapper.selectById(bookDTO.getCategoryId());
-        if (category == null) {
+        if (categoryCache.get(bookDTO.getCategoryId()) == null) {
             throw new RuntimeException("图书分类不存在");
         }
 
@@ -129,13 +215,41 @@ public class BookServiceImpl implements BookService {
             throw new RuntimeException("可借数量不能大于馆藏总数");
         }
 
+        // 客户端提交了编辑前读取的版本号时以其为准，期间图书被修改或借还导致可借数量变化时拒绝覆盖
+        Integer readVersion = book.getVersion();
         BeanUtils.copyProperties(bookDTO, book);
+        if (book.getVersion() == null) {
+            book.setVersion(readVersion);
+        }
         book.setId(id);
-        bookMapper.updateById(book);
+        if (bookMapper.updateById(book) == 0) {
+            throw new ConcurrentUpdateException();
+        }
+        onBookChanged(book);
     }
 
+    /**
+     * 书目信息取自详情缓存，可借数量、上下架状态等随借还变化的列每次按主键读取，
+     * 其他实例的借还不会让本实例返回过期的库存
+     */
     @Override
     public BookDetailDTO getBookById(Long id) {
+        Book stock = bookMapper.selectStockById(id);
+        if (stock == null) {
+            throw new RuntimeException("图书不存在");
+        }
+        BookDetailDTO detail = bookDetailCache.get(id, this::loadBookDetail);
+        detail.setAvailableCount(stock.getAvailableCount());
+        detail.setStatus(stock.getStatus());
+        detail.setVersion(stock.getVersion());
+        detail.setUpdateTime(stock.getUpdateTime());
+        return detail;
+    }
+
+    /**
+     * 从数据库加载图书详情
+     */
+    private BookDetailDTO loadBookDetail(Long id) {
         Book book = bookMapper.selectById(id);
         if (book == null) {
             throw new RuntimeException("图书不存在");
@@ -145,18 +259,23 @@ public class BookServiceImpl implements BookService {
         BeanUtils.copyProperties(book, detailDTO);
 
         // 获取分类名称
-        BookCategory category = bookCategoryMapper.selectById(book.getCategoryId());
-        if (category != null) {
-            detailDTO.setCategoryName(category.getCategoryName());
-        }
+        detailDTO.setCategoryName(categoryCache.getCategoryName(book.getCategoryId()));
 
         return detailDTO;
     }
 
     @Override
     public Page<BookDetailDTO> getBookList(int pageNum, int pageSize, String bookName,
-                                            String author, String publisher, Long categoryId, Integer status) {
-        Page<Book> page = new Page<>(pageNum, pageSize);
+                                            String author, String publisher, Long categoryId, Integer status,
+                                            boolean searchCount) {
+        // 有关键字时走内存倒排索引，避免LIKE '%x%'全表扫描；索引未就绪或有单字关键字时仍查数据库
+        boolean hasKeyword = StringUtils.hasText(bookName) || StringUtils.hasText(author)
+                || StringUtils.hasText(publisher);
+        if (hasKeyword && bookSearchIndex.isReady() && bookSearchIndex.supports(bookName, author, publisher)) {
+            return searchBookList(pageNum, pageSize, bookName, author, publisher, categoryId, status, searchCount);
+        }
+
+        Page<Book> page = new Page<>(pageNum, pageSize, searchCount);
         LambdaQueryWrapper<Book> wrapper = new LambdaQueryWrapper<>();
 
         if (StringUtils.hasText(bookName)) {
@@ -179,26 +298,105 @@ public class BookServiceImpl implements BookService {
 
         Page<Book> bookPage = bookMapper.selectPage(page, wrapper);
 
-        // 转换为BookDetailDTO
-        Page<BookDetailDTO> resultPage = new Page<>(pageNum, pageSize);
+        Page<BookDetailDTO> resultPage = new Page<>(bookPage.getCurrent(), bookPage.getSize(), searchCount);
         resultPage.setTotal(bookPage.getTotal());
 
+        resultPage.setRecords(toDetailList(bookPage.getRecords()));
+
+        return resultPage;
+    }
+
+    /**
+     * 通过搜索索引分页检索，再按ID批量读取当前页图书
+     */
+    private Page<BookDetailDTO> searchBookList(int pageNum, int pageSize, String bookName,
+                                               String author, String publisher, Long categoryId, Integer status,
+                                               boolean searchCount) {
+        pageNum = Math.max(pageNum, 1);
+        pageSize = Math.max(1, Math.min(pageSize, maxPageSize));
+        long offset = (long) (pageNum - 1) * pageSize;
+        BookSearchIndex.SearchResult result = bookSearchIndex.search(
+                bookName, author, publisher, categoryId, status, offset, pageSize);
+
+        List<Book> books = new ArrayList<>();
+        if (!result.getIds().isEmpty()) {
+            Map<Long, Book> bookMap = bookMapper.selectBatchIds(result.getIds()).stream()
+                    .collect(Collectors.toMap(Book::getId, Function.identity()));
+            for (Long id : result.getIds()) {
+                Book book = bookMap.get(id);
+                if (book != null) {
+                    books.add(book);
+                }
+            }
+        }
+
+        Page<BookDetailDTO> resultPage = new Page<>(pageNum, pageSize, searchCount);
+        resultPage.setTotal(result.getTotal());
+        resultPage.setRecords(toDetailList(books));
+        return resultPage;
+    }
+
+    /**
+     * 转换为BookDetailDTO
+     */
+    private List<BookDetailDTO> toDetailList(List<Book> books) {
         List<BookDetailDTO> detailList = new ArrayList<>();
-        for (Book book : bookPage.getRecords()) {
+        for (Book book : books) {
             BookDetailDTO detailDTO = new BookDetailDTO();
             BeanUtils.copyProperties(book, detailDTO);
 
-            // 获取分类名称
-            BookCategory category = bookCategoryMapper.selectById(book.getCategoryId());
-            if (category != null) {
-                detailDTO.setCategoryName(category.getCategoryName());
-            }
+            // 从分类字典缓存获取分类名称，不再逐条查询
+            detailDTO.setCategoryName(categoryCache.getCategoryName(book.getCategoryId()));
 
             detailList.add(detailDTO);
         }
-        resultPage.setRecords(detailList);
+        return detailList;
+    }
 
-        return resultPage;
+    /**
+     * 图书写入数据库后同步详情缓存、目录版本号、搜索索引和补全词条
+     */
+    private void onBookChanged(Book book) {
+        bookDetailCache.invalidateAfterCommit(book.getId());
+        catalogVersion.onBookChanged();
+        // 搜索索引和补全是内存数据，事务提交后再更新，回滚时保持原状
+        afterCommit(() -> {
+            bookSearchIndex.index(book);
+            bookSuggester.index(book);
+        });
+    }
+
+    /**
+     * 处于事务中时提交后再执行，否则立即执行
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    @Override
+    public int rebuildSearchIndex() {
+        int size = bookSearchIndex.rebuild();
+        bookSuggester.rebuild();
+        return size;
+    }
+
+    @Override
+    public CacheStatisticsDTO getDetailCacheStatistics() {
+        return bookDetailCache.getStatistics();
+    }
+
+    @Override
+    public List<SuggestionDTO> suggest(String prefix, String field, int limit) {
+        return bookSuggester.suggest(prefix, field, limit);
     }
 
     @Override
@@ -208,8 +406,10 @@ public class BookServiceImpl implements BookService {
             throw new RuntimeException("图书不存在");
         }
 
+        // 只写入状态列，不重写简介等大字段；读取的图书用于更新搜索索引
+        bookMapper.updateStatusByIds(List.of(id), status);
         book.setStatus(status);
-        bookMapper.updateById(book);
+        onBookChanged(book);
     }
 
     @Override
@@ -252,31 +452,59 @@ public class BookServiceImpl implements BookService {
 
     @Override
     public void increaseAvailableCount(Long bookId) {
-        Book book = bookMapper.selectById(bookId);
-        if (book == null) {
-            throw new RuntimeException("图书不存在");
-        }
-
-        if (book.getAvailableCount() >= book.getTotalCount()) {
+        // 单条条件更新，由数据库行锁保证并发下不会丢失更新
+        if (bookMapper.increaseAvailableCount(bookId) == 0) {
+            if (bookMapper.selectById(bookId) == null) {
+                throw new RuntimeException("图书不存在");
+            }
             throw new RuntimeException("可借数量已达到馆藏总数");
         }
-
-        book.setAvailableCount(book.getAvailableCount() + 1);
-        bookMapper.updateById(book);
+        // 详情缓存不保存可借数量，无需失效
+        catalogVersion.onBookChanged();
+
+        // 归还提交后再给库存闸门增加名额，回滚时不增加
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    hotBookStockGate.onStockReturned(bookId);
+                }
+            });
+        } else {
+            hotBookStockGate.onStockReturned(bookId);
+        }
     }
 
     @Override
     public void decreaseAvailableCount(Long bookId) {
-        Book book = bookMapper.selectById(bookId);
-        if (book == null) {
-            throw new RuntimeException("图书不存在");
-        }
-
-        if (book.getAvailableCount() <= 0) {
+        // 单条条件更新，库存不足时影响行数为0，避免先查后改的超借问题
+        // 语句同时要求图书为上架状态，与批量下架的UPDATE竞争同一行锁，下架提交后不会再借出
+        if (bookMapper.decreaseAvailableCount(bookId) == 0) {
+            Book book = bookMapper.selectById(bookId);
+            if (book == null) {
+                throw new RuntimeException("图书不存在");
+            }
+            if (book.getStatus() == null || book.getStatus() != 1) {
+                throw new RuntimeException("该图书已下架，无法借阅");
+            }
             throw new RuntimeException("该图书已无可借数量");
         }
+        // 详情缓存不保存可借数量，无需失效
+        catalogVersion.onBookChanged();
+    }
+
+    @Override
+    public void enableHotStock(Long bookId) {
+        hotBookStockGate.enable(bookId);
+    }
 
-        book.setAvailableCount(book.getAvailableCount() - 1);
-        bookMapper.updateById(book);
+    @Override
+    public void disableHotStock(Long bookId) {
+        hotBookStockGate.disable(bookId);
+    }
+
+    @Override
+    public List<HotStockStatisticsDTO> getHotStockStatistics() {
+        return hotBookStockGate.getStatistics();
     }
 }
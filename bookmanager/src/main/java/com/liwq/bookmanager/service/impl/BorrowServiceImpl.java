@@ -1,37 +1,68 @@
 package com.liwq.bookmanager.service.impl;
 
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.liwq.bookmanager.cache.BorrowStatisticsCounter;
+import com.liwq.bookmanager.cache.HotBookStockGate;
+import com.liwq.bookmanager.cache.UserLoanStateCache;
+import com.liwq.bookmanager.common.CurrentUser;
+import com.liwq.bookmanager.common.CurrentUserHolder;
+import com.liwq.bookmanager.common.OptimisticLockExecutor;
 import com.liwq.bookmanager.dto.BorrowDetailDTO;
+import com.liwq.bookmanager.dto.BorrowQuotaDTO;
 import com.liwq.bookmanager.dto.BorrowStatisticsDTO;
+import com.liwq.bookmanager.dto.CursorPageDTO;
+import com.liwq.bookmanager.dto.LockContentionDTO;
+import com.liwq.bookmanager.exception.ConcurrentUpdateException;
 import com.liwq.bookmanager.mapper.BorrowRecordMapper;
-import com.liwq.bookmanager.mapper.UserMapper;
+import com.liwq.bookmanager.mapper.JobCheckpointMapper;
 import com.liwq.bookmanager.model.BorrowRecord;
-import com.liwq.bookmanager.model.User;
+import com.liwq.bookmanager.model.JobCheckpoint;
+import com.liwq.bookmanager.outbox.OutboxDispatcher;
+import com.liwq.bookmanager.search.BookSuggester;
 import com.liwq.bookmanager.service.BorrowService;
 import com.liwq.bookmanager.service.BookService;
 import com.liwq.bookmanager.service.ReservationService;
-import jakarta.servlet.http.HttpServletRequest;
+import com.liwq.bookmanager.util.CursorUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.context.request.RequestContextHolder;
-import org.springframework.web.context.request.ServletRequestAttributes;
-
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.function.IntSupplier;
 
 /**
  * 借阅服务实现
  */
+@Slf4j
 @Service
 public class BorrowServiceImpl implements BorrowService {
 
     private final BorrowRecordMapper borrowRecordMapper;
     private final BookService bookService;
-    private final UserMapper userMapper;
     private final ReservationService reservationService;
+    private final HotBookStockGate hotBookStockGate;
+    private final UserLoanStateCache userLoanStateCache;
+    private final BorrowStatisticsCounter borrowStatisticsCounter;
+    private final BookSuggester bookSuggester;
+    private final JobCheckpointMapper jobCheckpointMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final OptimisticLockExecutor optimisticLockExecutor;
+    private final OutboxDispatcher outboxDispatcher;
 
     // 默认借阅期限（天）
     private static final int DEFAULT_BORROW_DAYS = 30;
@@ -39,71 +70,82 @@ public class BorrowServiceImpl implements BorrowService {
     private static final int DEFAULT_RENEW_DAYS = 15;
     // 最大续借次数
     private static final int MAX_RENEW_COUNT = 1;
+    // 最大同时借阅数量
+    private static final int MAX_BORROW_COUNT = 5;
+    // 逾期更新任务的检查点名称
+    private static final String OVERDUE_JOB_NAME = "overdue-sweep";
+    // 导出CSV的表头，与BorrowDetailDTO字段一致
+    private static final String EXPORT_CSV_HEADER = "id,userId,username,realName,bookId,bookName,author,categoryName," +
+            "borrowDate,dueDate,returnDate,renewCount,overdueDays,status";
+    private static final DateTimeFormatter EXPORT_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * 单页最大条数，与分页插件保持一致
+     */
+    @Value("${pagination.max-limit:100}")
+    private int maxPageSize;
+
+    /**
+     * 逾期批量更新时每批更新条数（首次全量扫描时为每批覆盖的ID区间大小）
+     */
+    @Value("${overdue-sweep.batch-size:1000}")
+    private int overdueBatchSize;
 
     public BorrowServiceImpl(BorrowRecordMapper borrowRecordMapper,
                               BookService bookService,
-                              UserMapper userMapper,
-                              @Lazy ReservationService reservationService) {
+                              @Lazy ReservationService reservationService,
+                              HotBookStockGate hotBookStockGate,
+                              UserLoanStateCache userLoanStateCache,
+                              BorrowStatisticsCounter borrowStatisticsCounter,
+                              BookSuggester bookSuggester,
+                              JobCheckpointMapper jobCheckpointMapper,
+                              TransactionTemplate transactionTemplate,
+                              ObjectMapper objectMapper,
+                              OptimisticLockExecutor optimisticLockExecutor,
+                              OutboxDispatcher outboxDispatcher) {
         this.borrowRecordMapper = borrowRecordMapper;
         this.bookService = bookService;
-        this.userMapper = userMapper;
         this.reservationService = reservationService;
-    }
-
-    /**
-     * 获取当前登录用户ID
-     */
-    private Long getCurrentUserId() {
-        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
-        if (attributes == null) {
-            throw new RuntimeException("无法获取请求上下文");
-        }
-        HttpServletRequest request = attributes.getRequest();
-        return (Long) request.getAttribute("userId");
+        this.hotBookStockGate = hotBookStockGate;
+        this.userLoanStateCache = userLoanStateCache;
+        this.borrowStatisticsCounter = borrowStatisticsCounter;
+        this.bookSuggester = bookSuggester;
+        this.jobCheckpointMapper = jobCheckpointMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.optimisticLockExecutor = optimisticLockExecutor;
+        this.outboxDispatcher = outboxDispatcher;
     }
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public void borrowBook(Long bookId) {
         // 获取当前用户
-        Long userId = getCurrentUserId();
-        User user = userMapper.selectById(userId);
-        if (user == null) {
-            throw new RuntimeException("用户不存在");
-        }
+        Long userId = CurrentUserHolder.require().getUserId();
 
-        // 检查用户状态
-        if (user.getStatus() == 0) {
-            throw new RuntimeException("用户已被禁用，无法借阅图书");
-        }
-
-        // 检查用户是否有逾期未还的图书
-        LambdaQueryWrapper<BorrowRecord> overdueWrapper = new LambdaQueryWrapper<>();
-        overdueWrapper.eq(BorrowRecord::getUserId, userId)
-                .eq(BorrowRecord::getStatus, "overdue");
-        Long overdueCount = borrowRecordMapper.selectCount(overdueWrapper);
-        if (overdueCount > 0) {
-            throw new RuntimeException("您有逾期未还的图书，请先归还后再借阅");
+        // 热门图书先经过内存库存闸门，已无库存时直接拒绝，不开启数据库事务
+        HotBookStockGate.Permit permit = hotBookStockGate.tryAcquire(bookId);
+        if (permit == null) {
+            throw new RuntimeException("该图书已无可借数量");
         }
 
-        // 检查用户当前借阅数量
-        LambdaQueryWrapper<BorrowRecord> borrowingWrapper = new LambdaQueryWrapper<>();
-        borrowingWrapper.eq(BorrowRecord::getUserId, userId)
-                .eq(BorrowRecord::getStatus, "borrowing");
-        Long borrowingCount = borrowRecordMapper.selectCount(borrowingWrapper);
-        if (borrowingCount >= 5) {
-            throw new RuntimeException("您当前借阅图书已达上限（5本），请先归还后再借阅");
+        boolean committed = false;
+        try {
+            transactionTemplate.executeWithoutResult(status -> doBorrowBook(userId, bookId));
+            committed = true;
+            // 借阅提交后增加补全热度
+            bookSuggester.onBorrowed(bookId);
+        } finally {
+            permit.complete(committed);
         }
+    }
 
-        // 检查是否已借阅该图书
-        LambdaQueryWrapper<BorrowRecord> checkWrapper = new LambdaQueryWrapper<>();
-        checkWrapper.eq(BorrowRecord::getUserId, userId)
-                .eq(BorrowRecord::getBookId, bookId)
-                .eq(BorrowRecord::getStatus, "borrowing");
-        Long count = borrowRecordMapper.selectCount(checkWrapper);
-        if (count > 0) {
-            throw new RuntimeException("您已借阅该图书，不能重复借阅");
-        }
+    /**
+     * 借阅事务：校验借阅条件、扣减库存并创建借阅记录
+     */
+    private void doBorrowBook(Long userId, Long bookId) {
+        // 用户状态和借阅计数优先取自缓存，未命中时一次聚合查询
+        BorrowQuotaDTO quota = userLoanStateCache.getQuota(userId, bookId);
+        checkBorrowQuota(quota);
 
         // 减少图书可借数量（会自动检查图书状态和库存）
         bookService.decreaseAvailableCount(bookId);
@@ -119,11 +161,48 @@ public class BorrowServiceImpl implements BorrowService {
         record.setStatus("borrowing");
 
         borrowRecordMapper.insert(record);
+        // 借到到书通知的图书后不再参与保留过期
+        reservationService.onBookBorrowed(userId, bookId);
+        userLoanStateCache.onBorrowedAfterCommit(userId, bookId, record.getDueDate());
+        borrowStatisticsCounter.onBorrowed();
+    }
+
+    /**
+     * 校验借阅条件
+     */
+    private void checkBorrowQuota(BorrowQuotaDTO quota) {
+        if (quota == null) {
+            throw new RuntimeException("用户不存在");
+        }
+
+        // 检查用户状态
+        if (quota.getUserStatus() == 0) {
+            throw new RuntimeException("用户已被禁用，无法借阅图书");
+        }
+
+        // 检查用户是否有逾期未还的图书
+        if (quota.getOverdueCount() > 0) {
+            throw new RuntimeException("您有逾期未还的图书，请先归还后再借阅");
+        }
+
+        // 检查用户当前借阅数量
+        if (quota.getBorrowingCount() >= MAX_BORROW_COUNT) {
+            throw new RuntimeException("您当前借阅图书已达上限（" + MAX_BORROW_COUNT + "本），请先归还后再借阅");
+        }
+
+        // 检查是否已借阅该图书
+        if (quota.getSameBookCount() > 0) {
+            throw new RuntimeException("您已借阅该图书，不能重复借阅");
+        }
     }
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public void returnBook(Long id) {
+        // 版本冲突时在新事务中重新读取并重试
+        optimisticLockExecutor.execute("returnBook", () -> doReturnBook(id));
+    }
+
+    private void doReturnBook(Long id) {
         // 查询借阅记录
         BorrowRecord record = borrowRecordMapper.selectById(id);
         if (record == null) {
@@ -136,9 +215,8 @@ public class BorrowServiceImpl implements BorrowService {
         }
 
         // 检查归还权限（只能归还自己的或管理员可归还任何）
-        Long currentUserId = getCurrentUserId();
-        User currentUser = userMapper.selectById(currentUserId);
-        if (!record.getUserId().equals(currentUserId) && !"admin".equals(currentUser.getRole())) {
+        CurrentUser currentUser = CurrentUserHolder.require();
+        if (!record.getUserId().equals(currentUser.getUserId()) && !currentUser.isAdmin()) {
             throw new RuntimeException("您无权归还该图书");
         }
 
@@ -154,29 +232,48 @@ public class BorrowServiceImpl implements BorrowService {
             record.setOverdueDays(0);
         }
 
-        // 更新状态
-        record.setStatus("returned");
+        // 只更新归还相关的列，以读取时的版本号为条件；并发重复归还或续借、逾期更新时版本号不一致，
+        // 本次不更新且不增加库存，重试时重新读取
+        String previousStatus = record.getStatus();
+        BorrowRecord update = new BorrowRecord();
+        update.setId(id);
+        update.setReturnDate(now);
+        update.setOverdueDays(record.getOverdueDays());
+        update.setStatus("returned");
+        update.setVersion(record.getVersion());
+        if (borrowRecordMapper.updateById(update) == 0) {
+            throw new ConcurrentUpdateException();
+        }
 
         // 增加图书可借数量
         bookService.increaseAvailableCount(record.getBookId());
 
-        borrowRecordMapper.updateById(record);
+        userLoanStateCache.invalidateAfterCommit(record.getUserId());
+        borrowStatisticsCounter.onReturned(previousStatus);
 
-        // 处理预约通知：图书归还后检查是否有预约记录
-        reservationService.handleBookReturnNotification(record.getBookId());
+        // 预约通知写入发件箱，随归还一起提交后由后台处理，不占用归还事务
+        outboxDispatcher.publish(OutboxDispatcher.BOOK_RETURNED, record.getBookId());
     }
 
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void renewBook(Long id) {
-        // 查询借阅记录
+        Long currentUserId = CurrentUserHolder.require().getUserId();
+        LocalDateTime now = LocalDateTime.now();
+
+        // 续借条件全部写在UPDATE中，一条语句完成校验和修改；
+        // 续借只改变应还日期，不影响借阅数量和逾期状态，用户借阅状态缓存无需失效
+        if (borrowRecordMapper.renew(id, currentUserId, DEFAULT_RENEW_DAYS, MAX_RENEW_COUNT, now) > 0) {
+            return;
+        }
+
+        // 更新失败时查询记录判断原因
         BorrowRecord record = borrowRecordMapper.selectById(id);
         if (record == null) {
             throw new RuntimeException("借阅记录不存在");
         }
 
         // 检查是否为本人借阅
-        Long currentUserId = getCurrentUserId();
         if (!record.getUserId().equals(currentUserId)) {
             throw new RuntimeException("只能续借自己的图书");
         }
@@ -186,8 +283,8 @@ public class BorrowServiceImpl implements BorrowService {
             throw new RuntimeException("该图书已归还，无需续借");
         }
 
-        // 检查是否逾期
-        if ("overdue".equals(record.getStatus())) {
+        // 检查是否逾期（定时任务尚未更新状态时按应还日期判断）
+        if ("overdue".equals(record.getStatus()) || record.getDueDate().isBefore(now)) {
             throw new RuntimeException("该图书已逾期，请先归还后再借阅");
         }
 
@@ -195,22 +292,19 @@ public class BorrowServiceImpl implements BorrowService {
         if (record.getRenewCount() >= MAX_RENEW_COUNT) {
             throw new RuntimeException("续借次数已达上限");
         }
-
-        // 延长应还日期
-        record.setDueDate(record.getDueDate().plusDays(DEFAULT_RENEW_DAYS));
-        record.setRenewCount(record.getRenewCount() + 1);
-
-        borrowRecordMapper.updateById(record);
+        throw new RuntimeException("借阅记录状态已变化，请刷新后重试");
     }
 
     @Override
     public Page<BorrowDetailDTO> getMyBorrowRecords(int pageNum, int pageSize, String status) {
-        Long userId = getCurrentUserId();
+        Long userId = CurrentUserHolder.require().getUserId();
         return getAllBorrowRecords(pageNum, pageSize, userId, null, status);
     }
 
     @Override
     public Page<BorrowDetailDTO> getAllBorrowRecords(int pageNum, int pageSize, Long userId, Long bookId, String status) {
+        pageSize = Math.max(1, Math.min(pageSize, maxPageSize));
+        pageNum = Math.max(1, pageNum);
         int offset = (pageNum - 1) * pageSize;
 
         List<BorrowDetailDTO> records = borrowRecordMapper.selectBorrowDetailList(
@@ -224,6 +318,107 @@ public class BorrowServiceImpl implements BorrowService {
         return page;
     }
 
+    @Override
+    public CursorPageDTO<BorrowDetailDTO> getMyBorrowRecordsByCursor(String cursor, int pageSize, String status) {
+        Long userId = CurrentUserHolder.require().getUserId();
+        return getAllBorrowRecordsByCursor(cursor, pageSize, userId, null, status);
+    }
+
+    @Override
+    public CursorPageDTO<BorrowDetailDTO> getAllBorrowRecordsByCursor(String cursor, int pageSize,
+                                                                     Long userId, Long bookId, String status) {
+        pageSize = Math.max(1, Math.min(pageSize, maxPageSize));
+        CursorUtil.Cursor position = CursorUtil.decode(cursor);
+
+        LocalDateTime cursorTime = position == null ? null : position.getCreateTime();
+        Long cursorId = position == null ? null : position.getId();
+        // 多查询一条用于判断是否还有下一页；逾期筛选拆成两段索引查询，避免OR条件无法使用游标索引
+        List<BorrowDetailDTO> rows = "overdue".equals(status)
+                ? borrowRecordMapper.selectOverdueDetailListByCursor(userId, bookId, cursorTime, cursorId, pageSize + 1)
+                : borrowRecordMapper.selectBorrowDetailListByCursor(userId, bookId, status, cursorTime, cursorId,
+                pageSize + 1);
+
+        return CursorPageDTO.of(rows, pageSize, row -> CursorUtil.encode(row.getCreateTime(), row.getId()));
+    }
+
+    @Override
+    public void exportBorrowRecords(Long userId, Long bookId, String status, LocalDate startDate, LocalDate endDate,
+                                    String format, OutputStream out) {
+        boolean csv = "csv".equals(format);
+        // 不关闭输出流，由Servlet容器负责
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        long start = System.currentTimeMillis();
+        long[] count = {0};
+        IOException[] writeError = {null};
+        try {
+            if (csv) {
+                // 带BOM，Excel打开时按UTF-8识别中文
+                writer.write('\uFEFF');
+                writer.write(EXPORT_CSV_HEADER);
+                writer.write('\n');
+            }
+            borrowRecordMapper.exportBorrowDetails(userId, bookId, status,
+                    startDate == null ? null : startDate.atStartOfDay(),
+                    endDate == null ? null : endDate.plusDays(1).atStartOfDay(),
+                    context -> {
+                        try {
+                            writer.write(csv ? toCsvLine(context.getResultObject())
+                                    : objectMapper.writeValueAsString(context.getResultObject()));
+                            writer.write('\n');
+                            count[0]++;
+                        } catch (IOException e) {
+                            // 客户端断开时停止读取结果集，响应已开始输出，不再抛出异常
+                            writeError[0] = e;
+                            context.stop();
+                        }
+                    });
+            if (writeError[0] == null) {
+                writer.flush();
+            }
+        } catch (IOException e) {
+            writeError[0] = e;
+        }
+        if (writeError[0] != null) {
+            log.warn("导出借阅记录中断，已写入{}条：{}", count[0], writeError[0].getMessage());
+            return;
+        }
+        log.info("导出借阅记录{}条，耗时{}ms", count[0], System.currentTimeMillis() - start);
+    }
+
+    private static String toCsvLine(BorrowDetailDTO row) {
+        return row.getId() + "," + row.getUserId() + "," + csvField(row.getUsername()) + ","
+                + csvField(row.getRealName()) + "," + row.getBookId() + "," + csvField(row.getBookName()) + ","
+                + csvField(row.getAuthor()) + "," + csvField(row.getCategoryName()) + ","
+                + csvTime(row.getBorrowDate()) + "," + csvTime(row.getDueDate()) + ","
+                + csvTime(row.getReturnDate()) + "," + csvNumber(row.getRenewCount()) + ","
+                + csvNumber(row.getOverdueDays()) + "," + csvField(row.getStatus());
+    }
+
+    /**
+     * 包含逗号、引号或换行的字段加引号，内部引号转义为两个引号
+     */
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        // 防止CSV注入：以公式字符开头的文本在Excel中会被当作公式执行，前面加单引号按文本显示
+        if (!value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String csvTime(LocalDateTime value) {
+        return value == null ? "" : value.format(EXPORT_TIME_FORMAT);
+    }
+
+    private static String csvNumber(Integer value) {
+        return value == null ? "" : value.toString();
+    }
+
     @Override
     public BorrowDetailDTO getBorrowDetail(Long id) {
         BorrowDetailDTO detail = borrowRecordMapper.selectBorrowDetailById(id);
@@ -232,9 +427,8 @@ public class BorrowServiceImpl implements BorrowService {
         }
 
         // 检查查看权限（只能查看自己的或管理员可查看任何）
-        Long currentUserId = getCurrentUserId();
-        User currentUser = userMapper.selectById(currentUserId);
-        if (!detail.getUserId().equals(currentUserId) && !"admin".equals(currentUser.getRole())) {
+        CurrentUser currentUser = CurrentUserHolder.require();
+        if (!detail.getUserId().equals(currentUser.getUserId()) && !currentUser.isAdmin()) {
             throw new RuntimeException("您无权查看该借阅记录");
         }
 
@@ -246,66 +440,83 @@ public class BorrowServiceImpl implements BorrowService {
         return getAllBorrowRecords(pageNum, pageSize, null, null, "overdue");
     }
 
+    @Override
+    public CursorPageDTO<BorrowDetailDTO> getOverdueRecordsByCursor(String cursor, int pageSize) {
+        return getAllBorrowRecordsByCursor(cursor, pageSize, null, null, "overdue");
+    }
+
+    @Override
+    public List<LockContentionDTO> getLockContentionStatistics() {
+        return optimisticLockExecutor.getStatistics();
+    }
+
     @Override
     public BorrowStatisticsDTO getBorrowStatistics() {
-        BorrowStatisticsDTO statistics = new BorrowStatisticsDTO();
-
-        // 总借阅量
-        Long totalBorrows = borrowRecordMapper.selectCount(null);
-        statistics.setTotalBorrows(totalBorrows);
-
-        // 当前借阅中数量
-        LambdaQueryWrapper<BorrowRecord> borrowingWrapper = new LambdaQueryWrapper<>();
-        borrowingWrapper.eq(BorrowRecord::getStatus, "borrowing");
-        Long currentBorrowing = borrowRecordMapper.selectCount(borrowingWrapper);
-        statistics.setCurrentBorrowing(currentBorrowing);
-
-        // 逾期数量
-        LambdaQueryWrapper<BorrowRecord> overdueWrapper = new LambdaQueryWrapper<>();
-        overdueWrapper.eq(BorrowRecord::getStatus, "overdue");
-        Long overdueCount = borrowRecordMapper.selectCount(overdueWrapper);
-        statistics.setOverdueCount(overdueCount);
-
-        // 已归还数量
-        LambdaQueryWrapper<BorrowRecord> returnedWrapper = new LambdaQueryWrapper<>();
-        returnedWrapper.eq(BorrowRecord::getStatus, "returned");
-        Long returnedCount = borrowRecordMapper.selectCount(returnedWrapper);
-        statistics.setReturnedCount(returnedCount);
-
-        // 总用户数
-        Long totalUsers = userMapper.selectCount(null);
-        statistics.setTotalUsers(totalUsers);
-
-        // 活跃用户数（有借阅记录的用户）
-        // 这里简化处理，统计有借阅中或逾期记录的用户数
-        LambdaQueryWrapper<BorrowRecord> activeWrapper = new LambdaQueryWrapper<>();
-        activeWrapper.in(BorrowRecord::getStatus, "borrowing", "overdue")
-                .select(BorrowRecord::getUserId)
-                .groupBy(BorrowRecord::getUserId);
-        Long activeUsers = (long) borrowRecordMapper.selectList(activeWrapper).size();
-        statistics.setActiveUsers(activeUsers);
-
-        return statistics;
+        // 直接读取内存计数，由借阅/归还/逾期变化维护并定期对账
+        return borrowStatisticsCounter.getStatistics();
     }
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public void updateOverdueRecords() {
-        // 查询所有借阅中的记录
-        LambdaQueryWrapper<BorrowRecord> wrapper = new LambdaQueryWrapper<>();
-        wrapper.eq(BorrowRecord::getStatus, "borrowing");
-        List<BorrowRecord> records = borrowRecordMapper.selectList(wrapper);
-
         LocalDateTime now = LocalDateTime.now();
+        JobCheckpoint checkpoint = jobCheckpointMapper.selectById(OVERDUE_JOB_NAME);
+        long total = checkpoint == null
+                ? markAllOverdue(now)
+                : markOverdueSince(checkpoint.getHighWaterMark(), now);
+
+        // 所有批次提交后才推进高水位，中途失败时下次从原高水位重新处理
+        jobCheckpointMapper.saveHighWaterMark(OVERDUE_JOB_NAME, now);
+        log.info("逾期记录更新完成，共更新{}条，高水位推进至{}", total, now);
+    }
 
-        for (BorrowRecord record : records) {
-            // 检查是否逾期
-            if (now.isAfter(record.getDueDate())) {
-                long overdueDays = ChronoUnit.DAYS.between(record.getDueDate(), now);
-                record.setOverdueDays((int) overdueDays);
-                record.setStatus("overdue");
-                borrowRecordMapper.updateById(record);
-            }
+    /**
+     * 只处理应还日期在上次高水位之后新到期的记录，每批更新固定条数直到没有剩余
+     */
+    private long markOverdueSince(LocalDateTime since, LocalDateTime now) {
+        long total = 0;
+        int updated;
+        do {
+            updated = markOverdueBatch(() -> borrowRecordMapper.markOverdueDueBetween(since, now, overdueBatchSize));
+            total += updated;
+        } while (updated >= overdueBatchSize);
+        return total;
+    }
+
+    /**
+     * 首次执行没有高水位，按ID区间全量扫描一次已到期的借阅中记录
+     */
+    private long markAllOverdue(LocalDateTime now) {
+        Long minId = borrowRecordMapper.selectMinOverdueCandidateId(now);
+        Long maxId = borrowRecordMapper.selectMaxOverdueCandidateId(now);
+        if (minId == null || maxId == null) {
+            return 0;
         }
+
+        long total = 0;
+        for (long fromId = minId; fromId <= maxId; fromId += overdueBatchSize) {
+            long batchFromId = fromId;
+            long batchToId = Math.min(fromId + overdueBatchSize - 1, maxId);
+            int updated = markOverdueBatch(() -> borrowRecordMapper.markOverdueInRange(batchFromId, batchToId, now));
+            total += updated;
+            log.info("逾期记录全量更新进度：ID区间[{}, {}]，最大ID {}，本批更新{}条，累计{}条",
+                    batchFromId, batchToId, maxId, updated, total);
+        }
+        return total;
+    }
+
+    /**
+     * 在独立事务中执行一批逾期更新，避免长事务长时间持有大量行锁
+     */
+    private int markOverdueBatch(IntSupplier batch) {
+        Integer updated = transactionTemplate.execute(status -> {
+            int count = batch.getAsInt();
+            if (count > 0) {
+                // 逾期状态变化影响借阅校验，清空用户借阅状态缓存
+                userLoanStateCache.invalidateAllAfterCommit();
+                borrowStatisticsCounter.onOverdue(count);
+            }
+            return count;
+        });
+        return updated == null ? 0 : updated;
     }
 }
@@ -2,31 +2,75 @@ package com.liwq.bookmanager.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.liwq.bookmanager.dto.CursorPageDTO;
+import com.liwq.bookmanager.dto.DailyCountDTO;
 import com.liwq.bookmanager.dto.ReservationDTO;
 import com.liwq.bookmanager.dto.ReservationDetailDTO;
+import com.liwq.bookmanager.dto.ReservationStatisticsDTO;
+import com.liwq.bookmanager.dto.StatusCountDTO;
 import com.liwq.bookmanager.mapper.BookMapper;
 import com.liwq.bookmanager.mapper.ReservationRecordMapper;
 import com.liwq.bookmanager.model.Book;
 import com.liwq.bookmanager.model.ReservationRecord;
+import com.liwq.bookmanager.notification.ReservationChangedEvent;
 import com.liwq.bookmanager.service.ReservationService;
+import com.liwq.bookmanager.util.CursorUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 预约服务实现类
  */
+@Slf4j
 @Service
 public class ReservationServiceImpl implements ReservationService {
 
     private final ReservationRecordMapper reservationRecordMapper;
     private final BookMapper bookMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public ReservationServiceImpl(ReservationRecordMapper reservationRecordMapper, BookMapper bookMapper) {
+    /**
+     * 到书通知后为用户保留的天数，过期未借阅则通知下一位
+     */
+    @Value("${reservation.hold-days:3}")
+    private int holdDays;
+
+    /**
+     * 每批处理的过期保留数量
+     */
+    @Value("${reservation.hold-expire-batch-size:200}")
+    private int holdExpireBatchSize;
+
+    /**
+     * 单页最大条数，与分页插件保持一致
+     */
+    @Value("${pagination.max-limit:100}")
+    private int maxPageSize;
+
+    // 预约趋势最多统计的天数
+    private static final int MAX_TREND_DAYS = 365;
+    // 热门预约图书排行条数
+    private static final int POPULAR_BOOK_LIMIT = 10;
+
+    public ReservationServiceImpl(ReservationRecordMapper reservationRecordMapper, BookMapper bookMapper,
+                                  TransactionTemplate transactionTemplate,
+                                  ApplicationEventPublisher eventPublisher) {
         this.reservationRecordMapper = reservationRecordMapper;
         this.bookMapper = bookMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
@@ -66,30 +110,25 @@ public class ReservationServiceImpl implements ReservationService {
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void cancelReservation(Long userId, Long id) {
-        // 验证预约记录是否存在
+        // 按归属和状态条件直接更新，只有失败时才查询记录判断原因
+        if (reservationRecordMapper.cancelByUser(id, userId) > 0) {
+            return;
+        }
+
         ReservationRecord record = reservationRecordMapper.selectById(id);
         if (record == null) {
             throw new RuntimeException("预约记录不存在");
         }
-
-        // 验证预约记录归属权限
         if (!record.getUserId().equals(userId)) {
             throw new RuntimeException("无权操作他人的预约记录");
         }
-
-        // 检查预约状态是否可取消（待审核或已通过状态）
-        if (!"pending".equals(record.getStatus()) && !"approved".equals(record.getStatus())) {
-            throw new RuntimeException("当前状态不允许取消预约");
-        }
-
-        // 更新预约状态为已取消
-        record.setStatus("cancelled");
-        reservationRecordMapper.updateById(record);
+        throw new RuntimeException("当前状态不允许取消预约");
     }
 
     @Override
-    public Page<ReservationDetailDTO> getMyReservations(Long userId, int pageNum, int pageSize, String status) {
-        Page<ReservationDetailDTO> page = new Page<>(pageNum, pageSize);
+    public Page<ReservationDetailDTO> getMyReservations(Long userId, int pageNum, int pageSize, String status,
+                                                        boolean searchCount) {
+        Page<ReservationDetailDTO> page = new Page<>(pageNum, pageSize, searchCount);
         return reservationRecordMapper.selectMyReservationPage(page, userId, status);
     }
 
@@ -99,6 +138,67 @@ public class ReservationServiceImpl implements ReservationService {
         return reservationRecordMapper.selectAllReservationPage(page, userId, bookId, status);
     }
 
+    @Override
+    public CursorPageDTO<ReservationDetailDTO> getMyReservationsByCursor(Long userId, String cursor, int pageSize, String status) {
+        pageSize = Math.max(1, Math.min(pageSize, maxPageSize));
+        CursorUtil.Cursor position = CursorUtil.decode(cursor);
+        List<ReservationDetailDTO> rows = reservationRecordMapper.selectMyReservationListByCursor(
+                userId, status,
+                position == null ? null : position.getCreateTime(),
+                position == null ? null : position.getId(),
+                pageSize + 1);
+        return CursorPageDTO.of(rows, pageSize, row -> CursorUtil.encode(row.getCreateTime(), row.getId()));
+    }
+
+    @Override
+    public CursorPageDTO<ReservationDetailDTO> getAllReservationsByCursor(String cursor, int pageSize,
+                                                                         Long userId, Long bookId, String status) {
+        pageSize = Math.max(1, Math.min(pageSize, maxPageSize));
+        CursorUtil.Cursor position = CursorUtil.decode(cursor);
+        List<ReservationDetailDTO> rows = reservationRecordMapper.selectAllReservationListByCursor(
+                userId, bookId, status,
+                position == null ? null : position.getCreateTime(),
+                position == null ? null : position.getId(),
+                pageSize + 1);
+        return CursorPageDTO.of(rows, pageSize, row -> CursorUtil.encode(row.getCreateTime(), row.getId()));
+    }
+
+    @Override
+    public ReservationStatisticsDTO getReservationStatistics(int days) {
+        int trendDays = Math.max(1, Math.min(days, MAX_TREND_DAYS));
+        ReservationStatisticsDTO statistics = new ReservationStatisticsDTO();
+
+        // 各状态数量：一次分组查询
+        Map<String, Long> statusCounts = new HashMap<>();
+        long total = 0;
+        for (StatusCountDTO statusCount : reservationRecordMapper.selectStatusCounts()) {
+            statusCounts.put(statusCount.getStatus(), statusCount.getCount());
+            total += statusCount.getCount();
+        }
+        statistics.setTotalReservations(total);
+        statistics.setPendingCount(statusCounts.getOrDefault("pending", 0L));
+        statistics.setApprovedCount(statusCounts.getOrDefault("approved", 0L));
+        statistics.setCancelledCount(statusCounts.getOrDefault("cancelled", 0L));
+        statistics.setCompletedCount(statusCounts.getOrDefault("completed", 0L));
+        statistics.setExpiredCount(statusCounts.getOrDefault("expired", 0L));
+
+        // 每日趋势：数据库只返回有预约的日期，其余日期补0
+        LocalDate startDate = LocalDate.now().minusDays(trendDays - 1);
+        Map<LocalDate, Long> dailyCounts = new HashMap<>();
+        for (DailyCountDTO dailyCount : reservationRecordMapper.selectDailyCounts(startDate.atStartOfDay())) {
+            dailyCounts.put(dailyCount.getDate(), dailyCount.getCount());
+        }
+        List<DailyCountDTO> trend = new ArrayList<>(trendDays);
+        for (int i = 0; i < trendDays; i++) {
+            LocalDate date = startDate.plusDays(i);
+            trend.add(new DailyCountDTO(date, dailyCounts.getOrDefault(date, 0L)));
+        }
+        statistics.setTrend(trend);
+
+        statistics.setPopularBooks(reservationRecordMapper.selectPopularBooks(POPULAR_BOOK_LIMIT));
+        return statistics;
+    }
+
     @Override
     public ReservationDetailDTO getReservationDetail(Long id) {
         ReservationDetailDTO detail = reservationRecordMapper.selectReservationDetailById(id);
@@ -111,60 +211,104 @@ public class ReservationServiceImpl implements ReservationService {
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void approveReservation(Long id) {
-        // 验证预约记录是否存在
-        ReservationRecord record = reservationRecordMapper.selectById(id);
-        if (record == null) {
-            throw new RuntimeException("预约记录不存在");
-        }
-
-        // 检查预约状态是否为待审核
-        if (!"pending".equals(record.getStatus())) {
-            throw new RuntimeException("只能审核待审核状态的预约记录");
+        // 待审核状态更新为已通过
+        if (reservationRecordMapper.transitionStatus(id, "pending", "approved", null) == 0) {
+            throw reviewFailure(id);
         }
-
-        // 更新预约状态为已通过
-        record.setStatus("approved");
-        reservationRecordMapper.updateById(record);
+        eventPublisher.publishEvent(new ReservationChangedEvent(id));
     }
 
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void rejectReservation(Long id, String remark) {
-        // 验证预约记录是否存在
-        ReservationRecord record = reservationRecordMapper.selectById(id);
-        if (record == null) {
-            throw new RuntimeException("预约记录不存在");
-        }
-
-        // 检查预约状态是否为待审核
-        if (!"pending".equals(record.getStatus())) {
-            throw new RuntimeException("只能审核待审核状态的预约记录");
+        // 待审核状态更新为已取消，并填写拒绝原因
+        if (reservationRecordMapper.transitionStatus(id, "pending", "cancelled",
+                remark != null && !remark.isEmpty() ? remark : null) == 0) {
+            throw reviewFailure(id);
         }
+        eventPublisher.publishEvent(new ReservationChangedEvent(id));
+    }
 
-        // 更新预约状态为已取消，并填写拒绝原因
-        record.setStatus("cancelled");
-        if (remark != null && !remark.isEmpty()) {
-            record.setRemark(remark);
+    /**
+     * 审核更新失败时查询记录判断原因
+     */
+    private RuntimeException reviewFailure(Long id) {
+        if (reservationRecordMapper.selectById(id) == null) {
+            return new RuntimeException("预约记录不存在");
         }
-        reservationRecordMapper.updateById(record);
+        return new RuntimeException("只能审核待审核状态的预约记录");
     }
 
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void handleBookReturnNotification(Long bookId) {
-        // 查询该图书的已通过预约记录，按创建时间排序（先预约先通知）
-        LambdaQueryWrapper<ReservationRecord> wrapper = new LambdaQueryWrapper<>();
-        wrapper.eq(ReservationRecord::getBookId, bookId)
-                .eq(ReservationRecord::getStatus, "approved")
-                .orderByAsc(ReservationRecord::getCreateTime);
-        List<ReservationRecord> records = reservationRecordMapper.selectList(wrapper);
-
-        // 如果有预约记录，将第一条更新为已完成状态（表示可借通知）
-        if (!records.isEmpty()) {
-            ReservationRecord firstRecord = records.get(0);
-            firstRecord.setStatus("completed");
-            firstRecord.setRemark("图书已归还，您可以前往借阅");
-            reservationRecordMapper.updateById(firstRecord);
+        notifyNextInQueue(bookId);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void onBookBorrowed(Long userId, Long bookId) {
+        reservationRecordMapper.releaseHold(userId, bookId);
+    }
+
+    @Override
+    public int expireHolds() {
+        LocalDateTime now = LocalDateTime.now();
+        int expired = 0;
+        List<ReservationRecord> holds;
+        int processed;
+        do {
+            holds = reservationRecordMapper.selectExpiredHolds(now, holdExpireBatchSize);
+            processed = 0;
+            for (ReservationRecord hold : holds) {
+                // 每条保留单独事务：过期和通知下一位同时生效，单条失败不影响其余记录
+                try {
+                    Boolean done = transactionTemplate.execute(status -> expireHold(hold, now));
+                    processed++;
+                    if (Boolean.TRUE.equals(done)) {
+                        expired++;
+                    }
+                } catch (Exception e) {
+                    log.error("预约保留过期处理失败，预约ID：{}", hold.getId(), e);
+                }
+            }
+            // 整批都失败时停止，留到下次执行，避免反复查询同一批记录
+        } while (holds.size() == holdExpireBatchSize && processed > 0);
+        if (expired > 0) {
+            log.info("预约保留过期处理完成，共{}条", expired);
+        }
+        return expired;
+    }
+
+    /**
+     * 将一条保留标记为过期，图书仍有库存时通知排队的下一位
+     *
+     * @return 是否由本次处理标记为过期
+     */
+    private boolean expireHold(ReservationRecord hold, LocalDateTime now) {
+        if (reservationRecordMapper.expireHold(hold.getId(), "未在保留期内借阅，预约已过期", now) == 0) {
+            // 期间已借阅或已被其他实例处理
+            return false;
+        }
+        eventPublisher.publishEvent(new ReservationChangedEvent(hold.getId()));
+        Book book = bookMapper.selectById(hold.getBookId());
+        if (book != null && book.getAvailableCount() != null && book.getAvailableCount() > 0) {
+            notifyNextInQueue(hold.getBookId());
+        }
+        return true;
+    }
+
+    /**
+     * 取出排队最早的已通过预约（先预约先通知），更新为到书通知并设置保留截止时间
+     */
+    private void notifyNextInQueue(Long bookId) {
+        Long nextId = reservationRecordMapper.selectNextInQueueForUpdate(bookId);
+        if (nextId != null) {
+            reservationRecordMapper.notifyHold(nextId,
+                    "图书已归还，请在" + holdDays + "天内前往借阅，逾期预约将失效",
+                    LocalDateTime.now().plusDays(holdDays));
+            // 事务提交后推送给预约用户
+            eventPublisher.publishEvent(new ReservationChangedEvent(nextId));
         }
     }
 }
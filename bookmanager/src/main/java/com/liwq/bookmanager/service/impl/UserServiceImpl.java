@@ -2,6 +2,7 @@ package com.liwq.bookmanager.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.liwq.bookmanager.cache.UserLoanStateCache;
 import com.liwq.bookmanager.dto.*;
 import com.liwq.bookmanager.mapper.UserMapper;
 import com.liwq.bookmanager.model.User;
@@ -25,6 +26,7 @@ public class UserServiceImpl implements UserService {
 
     private final UserMapper userMapper;
     private final JwtUtil jwtUtil;
+    private final UserLoanStateCache userLoanStateCache;
 
     @Override
     public void register(RegisterDTO registerDTO) {
@@ -105,11 +107,13 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public void updateUserInfo(Long userId, UpdateUserDTO updateUserDTO) {
-        User user = userMapper.selectById(userId);
-        if (user == null) {
-            throw new RuntimeException("用户不存在");
-        }
+        updateProfile(userId, updateUserDTO, null);
+    }
 
+    /**
+     * 只写入填写了的资料字段，不先查询用户，更新行数为0时说明用户不存在
+     */
+    private void updateProfile(Long userId, UpdateUserDTO updateUserDTO, String role) {
         // 检查邮箱是否已被其他用户使用
         if (StringUtils.hasText(updateUserDTO.getEmail())) {
             LambdaQueryWrapper<User> wrapper = new LambdaQueryWrapper<>();
@@ -122,17 +126,20 @@ public class UserServiceImpl implements UserService {
         }
 
         // 更新用户信息
-        if (StringUtils.hasText(updateUserDTO.getRealName())) {
-            user.setRealName(updateUserDTO.getRealName());
-        }
-        if (StringUtils.hasText(updateUserDTO.getPhone())) {
-            user.setPhone(updateUserDTO.getPhone());
-        }
-        if (StringUtils.hasText(updateUserDTO.getEmail())) {
-            user.setEmail(updateUserDTO.getEmail());
+        String realName = StringUtils.hasText(updateUserDTO.getRealName()) ? updateUserDTO.getRealName() : null;
+        String phone = StringUtils.hasText(updateUserDTO.getPhone()) ? updateUserDTO.getPhone() : null;
+        String email = StringUtils.hasText(updateUserDTO.getEmail()) ? updateUserDTO.getEmail() : null;
+        role = StringUtils.hasText(role) ? role : null;
+
+        int updated;
+        if (realName == null && phone == null && email == null && role == null) {
+            updated = userMapper.selectById(userId) == null ? 0 : 1;
+        } else {
+            updated = userMapper.updateProfile(userId, realName, phone, email, role);
+        }
+        if (updated == 0) {
+            throw new RuntimeException("用户不存在");
         }
-
-        userMapper.updateById(user);
     }
 
     @Override
@@ -148,8 +155,7 @@ public class UserServiceImpl implements UserService {
         }
 
         // 更新密码
-        user.setPassword(PasswordUtil.encryptPassword(passwordDTO.getNewPassword()));
-        userMapper.updateById(user);
+        userMapper.updatePassword(userId, PasswordUtil.encryptPassword(passwordDTO.getNewPassword()));
     }
 
     @Override
@@ -171,7 +177,7 @@ public class UserServiceImpl implements UserService {
         userMapper.selectPage(userPage, wrapper);
 
         // 转换为DTO
-        Page<UserDTO> dtoPage = new Page<>(page, size, userPage.getTotal());
+        Page<UserDTO> dtoPage = new Page<>(userPage.getCurrent(), userPage.getSize(), userPage.getTotal());
         List<UserDTO> dtoList = userPage.getRecords().stream().map(user -> {
             UserDTO dto = new UserDTO();
             BeanUtils.copyProperties(user, dto);
@@ -189,47 +195,14 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public void updateUserStatus(Long userId, Integer status) {
-        User user = userMapper.selectById(userId);
-        if (user == null) {
+        if (userMapper.updateStatus(userId, status) == 0) {
             throw new RuntimeException("用户不存在");
         }
-
-        user.setStatus(status);
-        userMapper.updateById(user);
+        userLoanStateCache.invalidateAfterCommit(userId);
     }
 
     @Override
     public void updateUser(Long userId, UpdateUserDTO updateUserDTO, String role) {
-        User user = userMapper.selectById(userId);
-        if (user == null) {
-            throw new RuntimeException("用户不存在");
-        }
-
-        // 检查邮箱是否已被其他用户使用
-        if (StringUtils.hasText(updateUserDTO.getEmail())) {
-            LambdaQueryWrapper<User> wrapper = new LambdaQueryWrapper<>();
-            wrapper.eq(User::getEmail, updateUserDTO.getEmail());
-            wrapper.ne(User::getId, userId);
-            User existUser = userMapper.selectOne(wrapper);
-            if (existUser != null) {
-                throw new RuntimeException("邮箱已被其他用户使用");
-            }
-        }
-
-        // 更新用户信息
-        if (StringUtils.hasText(updateUserDTO.getRealName())) {
-            user.setRealName(updateUserDTO.getRealName());
-        }
-        if (StringUtils.hasText(updateUserDTO.getPhone())) {
-            user.setPhone(updateUserDTO.getPhone());
-        }
-        if (StringUtils.hasText(updateUserDTO.getEmail())) {
-            user.setEmail(updateUserDTO.getEmail());
-        }
-        if (StringUtils.hasText(role)) {
-            user.setRole(role);
-        }
-
-        userMapper.updateById(user);
+        updateProfile(userId, updateUserDTO, role);
     }
 }
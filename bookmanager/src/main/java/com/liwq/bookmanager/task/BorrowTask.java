@@ -17,9 +17,9 @@ public class BorrowTask {
     }
 
     /**
-     * 每天凌晨1点更新逾期记录
+     * 定期将新到期的借阅记录标记为逾期（默认每10分钟，只处理上次执行后到期的记录）
      */
-    @Scheduled(cron = "0 0 1 * * ?")
+    @Scheduled(cron = "${overdue-sweep.cron:0 */10 * * * ?}")
     public void updateOverdueRecords() {
         borrowService.updateOverdueRecords();
     }
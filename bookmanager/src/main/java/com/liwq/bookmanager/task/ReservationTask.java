@@ -0,0 +1,26 @@
+package com.liwq.bookmanager.task;
+
+import com.liwq.bookmanager.service.ReservationService;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 预约相关定时任务
+ */
+@Component
+public class ReservationTask {
+
+    private final ReservationService reservationService;
+
+    public ReservationTask(ReservationService reservationService) {
+        this.reservationService = reservationService;
+    }
+
+    /**
+     * 定期处理到书通知后未在保留期内借阅的预约（默认每5分钟）
+     */
+    @Scheduled(cron = "${reservation.hold-expire-cron:0 */5 * * * ?}")
+    public void expireHolds() {
+        reservationService.expireHolds();
+    }
+}
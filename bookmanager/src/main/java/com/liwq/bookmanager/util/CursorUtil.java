@@ -0,0 +1,61 @@
+package com.liwq.bookmanager.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * 分页游标工具类
+ * 游标对外是不透明字符串，内部编码最后一条记录的创建时间和ID
+ */
+public class CursorUtil {
+
+    private static final String SEPARATOR = "_";
+
+    /**
+     * 生成游标
+     */
+    public static String encode(LocalDateTime createTime, Long id) {
+        String raw = createTime + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标，游标为空时返回null表示从第一页开始
+     */
+    public static Cursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int index = raw.lastIndexOf(SEPARATOR);
+            return new Cursor(LocalDateTime.parse(raw.substring(0, index)), Long.parseLong(raw.substring(index + 1)));
+        } catch (Exception e) {
+            throw new RuntimeException("无效的分页游标");
+        }
+    }
+
+    /**
+     * 游标位置：上一页最后一条记录的创建时间和ID
+     */
+    public static class Cursor {
+
+        private final LocalDateTime createTime;
+
+        private final Long id;
+
+        public Cursor(LocalDateTime createTime, Long id) {
+            this.createTime = createTime;
+            this.id = id;
+        }
+
+        public LocalDateTime getCreateTime() {
+            return createTime;
+        }
+
+        public Long getId() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.liwq.bookmanager.util;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * HTTP条件请求工具类
+ * 响应带上ETag/Last-Modified并要求浏览器每次验证，请求头与之匹配时返回304，控制器直接返回null即可
+ */
+public class HttpCacheUtil {
+
+    private static final String CACHE_CONTROL = "private, no-cache";
+
+    /**
+     * 按版本号ETag判断是否未修改，应在查询数据之前调用；etag为null表示版本暂不可用，不返回ETag
+     */
+    public static boolean checkNotModified(WebRequest request, String etag) {
+        setCacheControl(request);
+        return etag != null && request.checkNotModified(etag);
+    }
+
+    /**
+     * 按数据内容和更新时间判断是否未修改，省去序列化和传输
+     */
+    public static boolean checkNotModified(WebRequest request, Object content, LocalDateTime updateTime) {
+        setCacheControl(request);
+        long lastModified = updateTime == null ? -1
+                : updateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return request.checkNotModified(contentETag(content, lastModified), lastModified);
+    }
+
+    /**
+     * 内容ETag：更新时间只精确到秒，同一秒内的多次修改靠内容哈希区分
+     */
+    private static String contentETag(Object content, long lastModified) {
+        return "\"" + Long.toString(lastModified, 36) + "-" + Integer.toHexString(content.hashCode()) + "\"";
+    }
+
+    private static void setCacheControl(WebRequest request) {
+        if (request instanceof NativeWebRequest nativeRequest) {
+            HttpServletResponse response = nativeRequest.getNativeResponse(HttpServletResponse.class);
+            if (response != null) {
+                response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+            }
+        }
+    }
+}
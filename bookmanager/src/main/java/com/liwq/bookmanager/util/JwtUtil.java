@@ -1,34 +1,58 @@
 package com.liwq.bookmanager.util;
 
+import com.liwq.bookmanager.common.CurrentUser;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * JWT工具类
+ * 密钥和解析器启动时创建一次；验签通过的令牌按哈希缓存解析结果，缓存条目在令牌过期时失效，
+ * 同一令牌的后续请求不再重复验签。缓存每个请求都会读取，使用ConcurrentHashMap无锁读取，
+ * 不使用全局加锁的LRU；过期条目由定时任务清理，达到容量上限时插入新令牌前淘汰少量已有条目（优先已过期的），
+ * 请求线程上不做全量扫描。
  */
 @Component
 public class JwtUtil {
 
-    @Value("${jwt.secret}")
-    private String secret;
+    private final Long expiration;
 
-    @Value("${jwt.expiration}")
-    private Long expiration;
+    private final SecretKey secretKey;
+
+    private final JwtParser parser;
 
     /**
-     * 生成密钥
+     * 已验证令牌缓存：key为令牌的SHA-256哈希，不在内存中保留令牌原文
      */
-    private SecretKey getSecretKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    private final Map<String, CurrentUser> verifiedTokens = new ConcurrentHashMap<>();
+
+    private final int cacheSize;
+
+    // 缓存已满时为寻找过期条目检查的条目数
+    private static final int EVICTION_SAMPLES = 8;
+
+    public JwtUtil(@Value("${jwt.secret}") String secret,
+                   @Value("${jwt.expiration}") Long expiration,
+                   @Value("${jwt.cache-size:10000}") int cacheSize) {
+        this.expiration = expiration;
+        this.secretKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parser().verifyWith(secretKey).build();
+        this.cacheSize = cacheSize;
     }
 
     /**
@@ -48,71 +72,81 @@ public class JwtUtil {
                 .subject(username)
                 .issuedAt(now)
                 .expiration(expiryDate)
-                .signWith(getSecretKey())
+                .signWith(secretKey)
                 .compact();
     }
 
     /**
-     * 从令牌中获取Claims
+     * 解析令牌，令牌无效或已过期时返回null
      */
-    public Claims getClaimsFromToken(String token) {
+    public CurrentUser parseToken(String token) {
+        long now = System.currentTimeMillis();
+        String key = hash(token);
+        CurrentUser user = verifiedTokens.get(key);
+        if (user != null && !user.isExpired(now)) {
+            return user;
+        }
+
+        Claims claims;
         try {
-            return Jwts.parser()
-                    .verifyWith(getSecretKey())
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload();
+            claims = parser.parseSignedClaims(token).getPayload();
         } catch (Exception e) {
             return null;
         }
-    }
+        Date expiresAt = claims.getExpiration();
+        if (expiresAt == null || expiresAt.getTime() <= now) {
+            return null;
+        }
 
-    /**
-     * 从令牌中获取用户ID
-     */
-    public Long getUserIdFromToken(String token) {
-        Claims claims = getClaimsFromToken(token);
-        if (claims != null) {
-            return claims.get("userId", Long.class);
+        user = new CurrentUser(claims.get("userId", Long.class), claims.getSubject(),
+                claims.get("role", String.class), expiresAt.getTime());
+        if (verifiedTokens.size() >= cacheSize) {
+            evictOne(now);
         }
-        return null;
+        verifiedTokens.put(key, user);
+        return user;
     }
 
     /**
-     * 从令牌中获取用户名
+     * 淘汰一个缓存条目：在最先遍历到的几个条目中优先删除已过期的，都未过期时删除第一个
      */
-    public String getUsernameFromToken(String token) {
-        Claims claims = getClaimsFromToken(token);
-        if (claims != null) {
-            return claims.getSubject();
+    private void evictOne(long now) {
+        Iterator<Map.Entry<String, CurrentUser>> iterator = verifiedTokens.entrySet().iterator();
+        String first = null;
+        for (int i = 0; i < EVICTION_SAMPLES && iterator.hasNext(); i++) {
+            Map.Entry<String, CurrentUser> entry = iterator.next();
+            if (entry.getValue().isExpired(now)) {
+                verifiedTokens.remove(entry.getKey(), entry.getValue());
+                return;
+            }
+            if (first == null) {
+                first = entry.getKey();
+            }
+        }
+        if (first != null) {
+            verifiedTokens.remove(first);
         }
-        return null;
     }
 
     /**
-     * 从令牌中获取角色
+     * 定期清理已过期的缓存令牌（默认每10分钟）
      */
-    public String getRoleFromToken(String token) {
-        Claims claims = getClaimsFromToken(token);
-        if (claims != null) {
-            return claims.get("role", String.class);
-        }
-        return null;
+    @Scheduled(fixedDelayString = "${jwt.cache-sweep-interval:600000}")
+    public void sweepExpired() {
+        long now = System.currentTimeMillis();
+        verifiedTokens.values().removeIf(user -> user.isExpired(now));
     }
 
     /**
-     * 验证令牌是否有效
+     * 计算令牌的SHA-256哈希
      */
-    public boolean validateToken(String token) {
+    private static String hash(String token) {
         try {
-            Claims claims = getClaimsFromToken(token);
-            if (claims == null) {
-                return false;
-            }
-            Date expiration = claims.getExpiration();
-            return expiration.after(new Date());
-        } catch (Exception e) {
-            return false;
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = digest.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
     }
 }
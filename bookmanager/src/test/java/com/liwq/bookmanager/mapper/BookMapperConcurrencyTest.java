@@ -0,0 +1,147 @@
+package com.liwq.bookmanager.mapper;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 图书库存原子增减并发测试
+ * 在MySQL兼容模式的H2内存数据库上执行BookMapper中的真实UPDATE语句，多线程同时借还同一本书，验证不超卖、不超还
+ */
+class BookMapperConcurrencyTest {
+
+	private static final long BOOK_ID = 1L;
+
+	private static final int TOTAL_COUNT = 10;
+
+	private static final int THREADS = 32;
+
+	private static final int ATTEMPTS_PER_THREAD = 20;
+
+	private PooledDataSource dataSource;
+
+	private SqlSessionFactory sqlSessionFactory;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		dataSource = new PooledDataSource("org.h2.Driver",
+				"jdbc:h2:mem:stock;MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000", "sa", "");
+		dataSource.setPoolMaximumActiveConnections(THREADS);
+		dataSource.setPoolMaximumIdleConnections(THREADS);
+		execute("DROP TABLE IF EXISTS books");
+		execute("CREATE TABLE books (id BIGINT PRIMARY KEY, total_count INT NOT NULL, "
+				+ "available_count INT NOT NULL, status TINYINT NOT NULL DEFAULT 1, version INT NOT NULL DEFAULT 0)");
+		execute("INSERT INTO books (id, total_count, available_count) VALUES (" + BOOK_ID + ", " + TOTAL_COUNT
+				+ ", " + TOTAL_COUNT + ")");
+
+		MybatisConfiguration configuration = new MybatisConfiguration();
+		configuration.setMapUnderscoreToCamelCase(true);
+		configuration.setEnvironment(new Environment("test", new JdbcTransactionFactory(), dataSource));
+		configuration.addMapper(BookMapper.class);
+		sqlSessionFactory = new MybatisSqlSessionFactoryBuilder().build(configuration);
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		execute("DROP TABLE IF EXISTS books");
+		dataSource.forceCloseAll();
+	}
+
+	@Test
+	void concurrentBorrowsNeverOversell() throws Exception {
+		int succeeded = hammer(BookMapper::decreaseAvailableCount);
+
+		assertEquals(TOTAL_COUNT, succeeded);
+		assertEquals(0, queryInt("SELECT available_count FROM books WHERE id = " + BOOK_ID));
+		assertEquals(TOTAL_COUNT, queryInt("SELECT version FROM books WHERE id = " + BOOK_ID));
+	}
+
+	@Test
+	void delistedBookIsNotLent() throws Exception {
+		execute("UPDATE books SET status = 0 WHERE id = " + BOOK_ID);
+
+		assertEquals(0, hammer(BookMapper::decreaseAvailableCount));
+		assertEquals(TOTAL_COUNT, queryInt("SELECT available_count FROM books WHERE id = " + BOOK_ID));
+	}
+
+	@Test
+	void concurrentReturnsNeverExceedTotal() throws Exception {
+		execute("UPDATE books SET available_count = 0 WHERE id = " + BOOK_ID);
+
+		int succeeded = hammer(BookMapper::increaseAvailableCount);
+
+		assertEquals(TOTAL_COUNT, succeeded);
+		assertEquals(TOTAL_COUNT, queryInt("SELECT available_count FROM books WHERE id = " + BOOK_ID));
+	}
+
+	/**
+	 * 多个线程同时对同一本书执行更新，每次更新在独立的自动提交会话中进行，返回成功更新的次数
+	 */
+	private int hammer(StockUpdate update) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicInteger succeeded = new AtomicInteger();
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < THREADS; i++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					for (int j = 0; j < ATTEMPTS_PER_THREAD; j++) {
+						try (SqlSession session = sqlSessionFactory.openSession(true)) {
+							succeeded.addAndGet(update.apply(session.getMapper(BookMapper.class), BOOK_ID));
+						}
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return succeeded.get();
+	}
+
+	private void execute(String sql) throws Exception {
+		try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+			statement.execute(sql);
+		}
+	}
+
+	private int queryInt(String sql) throws Exception {
+		try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+			 ResultSet resultSet = statement.executeQuery(sql)) {
+			resultSet.next();
+			return resultSet.getInt(1);
+		}
+	}
+
+	@FunctionalInterface
+	private interface StockUpdate {
+
+		int apply(BookMapper mapper, Long id);
+	}
+}
@@ -0,0 +1,85 @@
+package com.liwq.bookmanager.search;
+
+import com.liwq.bookmanager.mapper.BookMapper;
+import com.liwq.bookmanager.model.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 图书搜索索引测试：匹配结果应与LIKE '%x%'一致
+ */
+class BookSearchIndexTest {
+
+	private BookSearchIndex index;
+
+	@BeforeEach
+	void setUp() {
+		index = new BookSearchIndex(mock(BookMapper.class), true, 100);
+		index.index(book(1L, "Java编程思想", "Bruce Eckel", "机械工业出版社", 1L, 1, 1));
+		index.index(book(2L, "深入理解Java虚拟机", "周志明", "机械工业出版社", 1L, 1, 2));
+		index.index(book(3L, "Java", "佚名", "人民邮电出版社", 1L, 0, 3));
+		index.index(book(4L, "三体", "刘慈欣", "重庆出版社", 2L, 1, 4));
+	}
+
+	@Test
+	void searchMatchesSubstringAndRanksExactMatchFirst() {
+		BookSearchIndex.SearchResult result = index.search("java", null, null, null, null, 0, 10);
+
+		assertEquals(3, result.getTotal());
+		// 完全相同 > 前缀 > 包含
+		assertEquals(List.of(3L, 1L, 2L), result.getIds());
+	}
+
+	@Test
+	void bigramsMustBeAdjacent() {
+		// "编思"的两个字都出现在书名中但不相邻，不应命中
+		assertEquals(0, index.search("编思", null, null, null, null, 0, 10).getTotal());
+		assertEquals(List.of(1L), index.search("编程思", null, null, null, null, 0, 10).getIds());
+		assertEquals(List.of(4L), index.search("三体", null, null, null, null, 0, 10).getIds());
+		// 单字关键字交给数据库查询
+		assertFalse(index.supports("体", null, null));
+		assertTrue(index.supports("三体", null, " "));
+	}
+
+	@Test
+	void filtersByCategoryStatusAndOtherFields() {
+		assertEquals(List.of(1L, 2L), index.search("java", null, "机械", 1L, 1, 0, 10).getIds());
+		assertEquals(List.of(2L), index.search("java", "周志明", null, null, null, 0, 10).getIds());
+		assertEquals(0, index.search("java", null, null, 2L, null, 0, 10).getTotal());
+	}
+
+	@Test
+	void updatesAndPagingReflectLatestState() {
+		index.index(book(4L, "三体II：黑暗森林", "刘慈欣", "重庆出版社", 2L, 1, 4));
+		index.remove(2L);
+
+		assertEquals(List.of(4L), index.search("三体", null, null, null, null, 0, 10).getIds());
+		assertEquals(List.of(4L), index.search("黑暗", null, null, null, null, 0, 10).getIds());
+		assertTrue(index.search("虚拟机", null, null, null, null, 0, 10).getIds().isEmpty());
+
+		BookSearchIndex.SearchResult secondPage = index.search("java", null, null, null, null, 1, 1);
+		assertEquals(2, secondPage.getTotal());
+		assertEquals(List.of(1L), secondPage.getIds());
+	}
+
+	private static Book book(Long id, String bookName, String author, String publisher,
+							 Long categoryId, Integer status, int day) {
+		Book book = new Book();
+		book.setId(id);
+		book.setBookName(bookName);
+		book.setAuthor(author);
+		book.setPublisher(publisher);
+		book.setCategoryId(categoryId);
+		book.setStatus(status);
+		book.setCreateTime(LocalDateTime.of(2025, 1, day, 0, 0));
+		return book;
+	}
+}
@@ -0,0 +1,81 @@
+package com.liwq.bookmanager.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 前缀补全字典树测试
+ */
+class SuggestTrieTest {
+
+	@Test
+	void returnsMostPopularTermsForPrefix() {
+		SuggestTrie trie = new SuggestTrie(2, 2, 2);
+		trie.add("Java编程思想", 5);
+		trie.add("Java核心技术", 9);
+		trie.add("JavaScript高级程序设计", 7);
+		trie.add("三体", 20);
+
+		assertEquals(List.of("Java核心技术", "JavaScript高级程序设计"), texts(trie.suggest("ja", 10)));
+		// 超过预存深度的前缀遍历子树
+		assertEquals(List.of("Java核心技术", "JavaScript高级程序设计"), texts(trie.suggest("java", 10)));
+		assertEquals(List.of("Java编程思想"), texts(trie.suggest("java编", 10)));
+		assertTrue(trie.suggest("python", 10).isEmpty());
+	}
+
+	@Test
+	void keepsTopListsInSyncWithUpdates() {
+		SuggestTrie trie = new SuggestTrie(2, 2, 3);
+		trie.add("Java编程思想", 5);
+		trie.add("Java核心技术", 9);
+		trie.add("JavaScript高级程序设计", 7);
+
+		// 热度增加后进入前k
+		trie.increase("Java编程思想", 10);
+		assertEquals(List.of("Java编程思想", "Java核心技术"), texts(trie.suggest("j", 10)));
+
+		// 删除后排在后面的词条补上
+		trie.remove("Java编程思想", 15);
+		assertEquals(List.of("Java核心技术", "JavaScript高级程序设计"), texts(trie.suggest("j", 10)));
+		assertTrue(trie.suggest("java编", 10).isEmpty());
+		assertEquals(2, trie.size());
+
+		// 多本图书共享词条时只减少热度
+		trie.add("Java核心技术", 1);
+		trie.remove("Java核心技术", 9);
+		assertEquals(List.of("JavaScript高级程序设计", "Java核心技术"), texts(trie.suggest("j", 10)));
+	}
+
+	@Test
+	void refillsPartialTopListWhenItRunsShort() {
+		// 每个节点预存3个词条，第4个词条留在列表外
+		SuggestTrie trie = new SuggestTrie(2, 3, 2);
+		trie.add("a1", 10);
+		trie.add("a2", 8);
+		trie.add("a3", 6);
+		trie.add("a4", 4);
+
+		// 热度下降到列表末尾之后，移出列表，剩余词条仍不少于k个
+		trie.increase("a1", -9);
+		assertEquals(List.of("a2", "a3"), texts(trie.suggest("a", 10)));
+
+		// 列表少于k个时遍历子树补齐，列表外的词条重新进入
+		trie.remove("a2", 8);
+		trie.remove("a3", 6);
+		assertEquals(List.of("a4", "a1"), texts(trie.suggest("a", 10)));
+
+		// 列表外的词条热度增加后重新进入
+		trie.add("a5", 1);
+		trie.increase("a5", 20);
+		assertEquals(List.of("a5", "a4"), texts(trie.suggest("a", 10)));
+	}
+
+	private static List<String> texts(List<SuggestTrie.Term> terms) {
+		return terms.stream().map(SuggestTrie.Term::getText).collect(Collectors.toList());
+	}
+}
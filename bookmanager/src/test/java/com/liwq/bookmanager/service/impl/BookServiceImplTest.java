@@ -0,0 +1,86 @@
+package com.liwq.bookmanager.service.impl;
+
+import com.liwq.bookmanager.cache.BookDetailCache;
+import com.liwq.bookmanager.cache.CatalogVersion;
+import com.liwq.bookmanager.cache.CategoryCache;
+import com.liwq.bookmanager.cache.HotBookStockGate;
+import com.liwq.bookmanager.mapper.BookMapper;
+import com.liwq.bookmanager.mapper.BorrowRecordMapper;
+import com.liwq.bookmanager.model.Book;
+import com.liwq.bookmanager.search.BookSearchIndex;
+import com.liwq.bookmanager.search.BookSuggester;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 图书库存增减测试
+ * 库存不超卖由BookMapper中带条件的UPDATE语句保证，见BookMapperConcurrencyTest；这里只验证服务层对更新结果的处理
+ */
+class BookServiceImplTest {
+
+	private static final long BOOK_ID = 1L;
+
+	private BookMapper bookMapper;
+
+	private BookServiceImpl bookService;
+
+	@BeforeEach
+	void setUp() {
+		bookMapper = mock(BookMapper.class);
+		Book book = new Book();
+		book.setId(BOOK_ID);
+		book.setStatus(1);
+		when(bookMapper.selectById(BOOK_ID)).thenReturn(book);
+
+		bookService = new BookServiceImpl(bookMapper, mock(BorrowRecordMapper.class), mock(CategoryCache.class),
+				mock(HotBookStockGate.class), mock(BookSearchIndex.class), mock(BookSuggester.class),
+				mock(BookDetailCache.class), mock(CatalogVersion.class), mock(TransactionTemplate.class));
+	}
+
+	@Test
+	void decreaseReportsMissingBook() {
+		when(bookMapper.decreaseAvailableCount(anyLong())).thenReturn(0);
+		when(bookMapper.selectById(2L)).thenReturn(null);
+
+		RuntimeException e = assertThrows(RuntimeException.class, () -> bookService.decreaseAvailableCount(2L));
+		assertEquals("图书不存在", e.getMessage());
+	}
+
+	@Test
+	void decreaseReportsNoStock() {
+		when(bookMapper.decreaseAvailableCount(BOOK_ID)).thenReturn(0);
+
+		RuntimeException e = assertThrows(RuntimeException.class, () -> bookService.decreaseAvailableCount(BOOK_ID));
+		assertEquals("该图书已无可借数量", e.getMessage());
+	}
+
+	@Test
+	void decreaseReportsDelistedBook() {
+		Book delisted = new Book();
+		delisted.setId(3L);
+		delisted.setStatus(0);
+		when(bookMapper.decreaseAvailableCount(3L)).thenReturn(0);
+		when(bookMapper.selectById(3L)).thenReturn(delisted);
+
+		RuntimeException e = assertThrows(RuntimeException.class, () -> bookService.decreaseAvailableCount(3L));
+		assertEquals("该图书已下架，无法借阅", e.getMessage());
+	}
+
+	@Test
+	void successfulDecreaseDoesNotReadBook() {
+		when(bookMapper.decreaseAvailableCount(BOOK_ID)).thenReturn(1);
+
+		bookService.decreaseAvailableCount(BOOK_ID);
+
+		verify(bookMapper, never()).selectById(BOOK_ID);
+	}
+}
@@ -64,6 +64,17 @@ export const getBookList = (params) => {
   })
 }
 
+/**
+ * 获取搜索补全建议
+ */
+export const suggestBooks = (params) => {
+  return request({
+    url: '/api/books/suggest',
+    method: 'get',
+    params
+  })
+}
+
 /**
  * 更新图书状态
  */
@@ -53,6 +53,28 @@ export const getAllBorrowRecords = (params) => {
   })
 }
 
+/**
+ * 按游标获取我的借阅记录
+ */
+export const getMyBorrowRecordsByCursor = (params) => {
+  return request({
+    url: '/api/borrows/my/cursor',
+    method: 'get',
+    params
+  })
+}
+
+/**
+ * 按游标获取所有借阅记录（管理员）
+ */
+export const getAllBorrowRecordsByCursor = (params) => {
+  return request({
+    url: '/api/borrows/cursor',
+    method: 'get',
+    params
+  })
+}
+
 /**
  * 获取借阅详情
  */
@@ -74,6 +96,17 @@ export const getOverdueRecords = (params) => {
   })
 }
 
+/**
+ * 按游标获取逾期记录（管理员）
+ */
+export const getOverdueRecordsByCursor = (params) => {
+  return request({
+    url: '/api/borrows/overdue/cursor',
+    method: 'get',
+    params
+  })
+}
+
 /**
  * 获取借阅统计数据（管理员）
  */
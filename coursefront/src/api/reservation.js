@@ -43,6 +43,39 @@ export const getAllReservations = (params) => {
   })
 }
 
+/**
+ * 按游标获取我的预约记录
+ */
+export const getMyReservationsByCursor = (params) => {
+  return request({
+    url: '/api/reservations/my/cursor',
+    method: 'get',
+    params
+  })
+}
+
+/**
+ * 按游标获取所有预约记录（管理员）
+ */
+export const getAllReservationsByCursor = (params) => {
+  return request({
+    url: '/api/reservations/cursor',
+    method: 'get',
+    params
+  })
+}
+
+/**
+ * 获取预约统计（管理员）
+ */
+export const getReservationStatistics = (params) => {
+  return request({
+    url: '/api/reservations/statistics',
+    method: 'get',
+    params
+  })
+}
+
 /**
  * 获取预约详情
  */
@@ -73,3 +106,11 @@ export const rejectReservation = (id, remark) => {
     params: { remark }
   })
 }
+
+/**
+ * 订阅我的预约通知（SSE），EventSource无法设置请求头，令牌通过参数传递
+ */
+export const subscribeReservationNotifications = () => {
+  const token = localStorage.getItem('token') || ''
+  return new EventSource(`${request.defaults.baseURL}/api/reservations/notifications/stream?token=${encodeURIComponent(token)}`)
+}
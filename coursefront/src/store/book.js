@@ -75,7 +75,8 @@ export const useBookStore = defineStore('book', () => {
    */
   const deleteBatchBooks = async (ids) => {
     try {
-      await bookApi.deleteBatchBooks(ids)
+      const res = await bookApi.deleteBatchBooks(ids)
+      return res.data
     } catch (error) {
       console.error('批量删除图书失败:', error)
       throw error
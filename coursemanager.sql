@@ -55,6 +55,7 @@ CREATE TABLE books (
     cover_image VARCHAR(255) DEFAULT NULL COMMENT '封面图片路径',
     description TEXT DEFAULT NULL COMMENT '图书简介',
     status INT NOT NULL DEFAULT 1 COMMENT '状态：0下架，1上架',
+    version INT NOT NULL DEFAULT 0 COMMENT '乐观锁版本号',
     create_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     update_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     FOREIGN KEY (category_id) REFERENCES book_categories(id)
@@ -71,6 +72,7 @@ CREATE TABLE borrow_records (
     renew_count INT NOT NULL DEFAULT 0 COMMENT '续借次数',
     overdue_days INT NOT NULL DEFAULT 0 COMMENT '逾期天数',
     status VARCHAR(20) NOT NULL DEFAULT 'borrowing' COMMENT '状态：borrowing借阅中，returned已归还，overdue已逾期',
+    version INT NOT NULL DEFAULT 0 COMMENT '乐观锁版本号',
     create_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     update_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     FOREIGN KEY (user_id) REFERENCES users(id),
@@ -83,8 +85,10 @@ CREATE TABLE reservation_records (
     user_id BIGINT NOT NULL COMMENT '用户ID',
     book_id BIGINT NOT NULL COMMENT '图书ID',
     reservation_date DATETIME NOT NULL COMMENT '预约日期',
-    status VARCHAR(20) NOT NULL DEFAULT 'pending' COMMENT '状态：pending待审核，approved已通过，cancelled已取消，completed已完成',
+    status VARCHAR(20) NOT NULL DEFAULT 'pending' COMMENT '状态：pending待审核，approved已通过（排队中），cancelled已取消，completed已到书通知，expired已过期',
     remark VARCHAR(200) DEFAULT NULL COMMENT '备注信息',
+    hold_expire_time DATETIME DEFAULT NULL COMMENT '到书通知后的保留截止时间，借阅后清空',
+    version INT NOT NULL DEFAULT 0 COMMENT '乐观锁版本号',
     create_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     update_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     FOREIGN KEY (user_id) REFERENCES users(id),
@@ -104,6 +108,26 @@ CREATE TABLE announcements (
     FOREIGN KEY (publish_user_id) REFERENCES users(id)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='公告表';
 
+-- 定时任务检查点表
+CREATE TABLE job_checkpoints (
+    job_name VARCHAR(50) PRIMARY KEY COMMENT '任务名称',
+    high_water_mark DATETIME NOT NULL COMMENT '高水位：上次执行已处理到的时间点',
+    update_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='定时任务检查点表';
+
+-- 事务发件箱表：与业务数据在同一事务中写入，提交后由后台分发处理
+CREATE TABLE outbox_events (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT '主键ID',
+    event_type VARCHAR(50) NOT NULL COMMENT '事件类型：book_returned图书归还',
+    aggregate_id BIGINT NOT NULL COMMENT '事件关联的业务ID（如图书ID）',
+    status VARCHAR(20) NOT NULL DEFAULT 'pending' COMMENT '状态：pending待处理，done已处理，failed重试耗尽',
+    attempts INT NOT NULL DEFAULT 0 COMMENT '已失败次数',
+    next_attempt_time DATETIME NOT NULL COMMENT '下次可处理时间',
+    last_error VARCHAR(500) DEFAULT NULL COMMENT '最近一次失败原因',
+    create_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    update_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='事务发件箱表';
+
 -- =============================================
 -- 插入初始数据
 -- =============================================
@@ -183,20 +207,42 @@ CREATE INDEX idx_book_name ON books(book_name);
 CREATE INDEX idx_author ON books(author);
 CREATE INDEX idx_isbn ON books(isbn);
 CREATE INDEX idx_category_id ON books(category_id);
+-- 目录版本索引：列表ETag取MAX(update_time)
+CREATE INDEX idx_books_update_time ON books(update_time);
 
 -- 借阅记录表索引
 CREATE INDEX idx_user_id ON borrow_records(user_id);
 CREATE INDEX idx_book_id ON borrow_records(book_id);
 CREATE INDEX idx_status ON borrow_records(status);
+-- 借阅前置校验索引：按用户统计借阅中/逾期数量及是否已借某书
+CREATE INDEX idx_borrow_user_status_book ON borrow_records(user_id, status, book_id);
+-- 逾期更新索引：按状态和应还日期查找上次执行后新到期的借阅中记录
+CREATE INDEX idx_borrow_status_due_date ON borrow_records(status, due_date);
+-- 游标分页索引：按(create_time, id)倒序翻页，分别覆盖无条件、按用户、按状态三种筛选
+CREATE INDEX idx_borrow_create_time ON borrow_records(create_time, id);
+CREATE INDEX idx_borrow_user_create_time ON borrow_records(user_id, create_time, id);
+CREATE INDEX idx_borrow_status_create_time ON borrow_records(status, create_time, id);
 
 -- 预约记录表索引
 CREATE INDEX idx_reservation_user_id ON reservation_records(user_id);
-CREATE INDEX idx_reservation_book_id ON reservation_records(book_id);
+-- 游标分页索引
+CREATE INDEX idx_reservation_create_time ON reservation_records(create_time, id);
+CREATE INDEX idx_reservation_user_create_time ON reservation_records(user_id, create_time, id);
+CREATE INDEX idx_reservation_status_create_time ON reservation_records(status, create_time, id);
+-- 预约统计索引：按预约日期统计每日趋势（状态分组计数可使用idx_reservation_status_create_time）
+CREATE INDEX idx_reservation_date ON reservation_records(reservation_date);
+-- 预约排队：按图书取最早的已通过预约（同时替代原book_id单列索引）
+CREATE INDEX idx_reservation_book_queue ON reservation_records(book_id, status, create_time, id);
+-- 保留到期检查
+CREATE INDEX idx_reservation_status_hold ON reservation_records(status, hold_expire_time);
 
 -- 公告表索引
 CREATE INDEX idx_is_top ON announcements(is_top);
 CREATE INDEX idx_status ON announcements(status);
 
+-- 发件箱索引：按状态和下次处理时间取待处理事件，清理已处理事件
+CREATE INDEX idx_outbox_status_next ON outbox_events(status, next_attempt_time, id);
+
 -- =============================================
 -- 初始化完成
 -- =============================================